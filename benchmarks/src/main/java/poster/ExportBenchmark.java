@@ -0,0 +1,55 @@
+package poster;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ExportBenchmark {
+    @Param({"10000"})
+    public int objects;
+
+    @Param({"150", "300"})
+    public int dpi;
+
+    PosterExporter exporter;
+    File output;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<Drawable> drawables = SceneGenerator.generate(SceneGenerator.Kind.MIXED, objects, SceneGenerator.SEED);
+        exporter = new PosterExporter(drawables, new Rectangle2D.Double(0, 0, SceneGenerator.WIDTH, SceneGenerator.HEIGHT),
+                PosterExporter.scaleForDpi(dpi));
+        output = File.createTempFile("poster-export", ".png");
+    }
+
+    @TearDown
+    public void tearDown() {
+        output.delete();
+    }
+
+    @Benchmark
+    public void exportPng() throws IOException {
+        exporter.write(output, "png");
+    }
+
+    @Benchmark
+    public int renderStrips() {
+        int pixels = 0;
+        for (int strip = 0; strip < exporter.stripCount(); strip++) {
+            BufferedImage image = exporter.renderStrip(strip);
+            pixels += image.getHeight();
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,84 @@
+package poster;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.awt.*;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class GeometryBenchmark {
+    @Param({"10000"})
+    public int objects;
+
+    List<Drawable> drawables;
+    // The same scene without a canvas, so no listener repaints or reindexes on changes.
+    List<Drawable> detached;
+    CanvasPanel canvas;
+    Point[] points;
+    int next;
+
+    @Setup
+    public void setUp() {
+        drawables = SceneGenerator.generate(SceneGenerator.Kind.MIXED, objects, SceneGenerator.SEED);
+        canvas = SceneGenerator.createCanvas(drawables);
+        detached = SceneGenerator.generate(SceneGenerator.Kind.MIXED, objects, SceneGenerator.SEED);
+        Random random = new Random(SceneGenerator.SEED);
+        points = new Point[1024];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = new Point(random.nextInt(SceneGenerator.WIDTH), random.nextInt(SceneGenerator.HEIGHT));
+        }
+    }
+
+    private Point nextPoint() {
+        return points[next++ & (points.length - 1)];
+    }
+
+    private Drawable nextDrawable() {
+        return drawables.get(next++ % drawables.size());
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return nextDrawable().contains(nextPoint());
+    }
+
+    @Benchmark
+    public Rectangle getBounds() {
+        return nextDrawable().getBounds();
+    }
+
+    @Benchmark
+    public Drawable pick() {
+        return canvas.drawableAt(nextPoint());
+    }
+
+    private static void applyChain(Drawable drawable, Blackhole blackhole) {
+        drawable.translate(2, -1);
+        drawable.scale(1.01, 1.01, 100, 100);
+        drawable.rotate(0.01, 100, 100);
+        drawable.rotate(-0.01, 100, 100);
+        drawable.scale(1 / 1.01, 1 / 1.01, 100, 100);
+        drawable.translate(-2, 1);
+        blackhole.consume(drawable.getBounds());
+    }
+
+    // The geometry updates alone.
+    @Benchmark
+    public void transformChain(Blackhole blackhole) {
+        applyChain(detached.get(next++ % detached.size()), blackhole);
+    }
+
+    // The same updates on drawables shown by a canvas, including its repaint requests and QuadTree updates.
+    @Benchmark
+    public void transformChainOnCanvas(Blackhole blackhole) {
+        applyChain(nextDrawable(), blackhole);
+    }
+}
@@ -0,0 +1,82 @@
+package poster;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+    @Param({"100", "10000", "100000"})
+    public int objects;
+
+    @Param({"SHAPES", "IMAGES"})
+    public String kind;
+
+    CanvasPanel canvas;
+    Graphics2D g2d;
+    Drawable dragged;
+    int step;
+
+    @Setup
+    public void setUp() {
+        canvas = SceneGenerator.createCanvas(SceneGenerator.generate(SceneGenerator.Kind.valueOf(kind), objects, SceneGenerator.SEED));
+        BufferedImage target = new BufferedImage(SceneGenerator.WIDTH, SceneGenerator.HEIGHT, BufferedImage.TYPE_INT_ARGB_PRE);
+        g2d = target.createGraphics();
+        dragged = canvas.drawableObjects.get(objects / 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        g2d.dispose();
+    }
+
+    @Benchmark
+    public void paintFullFrame() {
+        canvas.select(null);
+        canvas.paintComponent(g2d);
+    }
+
+    // A pan or zoom gesture repaints the whole view with the interactive render quality.
+    @Benchmark
+    public void paintFullFrameFast() {
+        canvas.interactive = true;
+        paintFullFrame();
+    }
+
+    @Benchmark
+    public void paintWhileDragging() {
+        canvas.select(dragged);
+        dragged.translate((step++ & 1) == 0 ? 3 : -3, 0);
+        canvas.paintComponent(g2d);
+    }
+
+    // Same frame as paintWhileDragging with the interactive render quality a real gesture gets.
+    @Benchmark
+    public void paintWhileDraggingFast() {
+        canvas.interactive = true;
+        paintWhileDragging();
+    }
+
+    // Whole scene in a tenth of the viewport: most drawables fall under the proxy size.
+    @Benchmark
+    public void paintZoomedOut() {
+        canvas.select(null);
+        canvas.setView(0.1, SceneGenerator.WIDTH * 0.45, SceneGenerator.HEIGHT * 0.45);
+        canvas.paintComponent(g2d);
+    }
+
+    // A quarter of the scene width at 4x: culling skips everything off screen.
+    @Benchmark
+    public void paintZoomedIn() {
+        canvas.select(null);
+        canvas.setView(4, -SceneGenerator.WIDTH * 1.5, -SceneGenerator.HEIGHT * 1.5);
+        canvas.paintComponent(g2d);
+    }
+}
@@ -0,0 +1,75 @@
+package poster;
+
+import java.awt.*;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class SceneGenerator {
+    static final long SEED = 20240611L;
+    static final int WIDTH = 1200;
+    static final int HEIGHT = 800;
+
+    enum Kind { SHAPES, IMAGES, MIXED }
+
+    private SceneGenerator() {
+    }
+
+    static List<Drawable> generate(Kind kind, int count, long seed) {
+        Random random = new Random(seed);
+        MipMap[] images = new MipMap[kind == Kind.SHAPES ? 0 : 8];
+        for (int i = 0; i < images.length; i++) {
+            images[i] = new MipMap(createImage(random, 1024 + random.nextInt(1024), 768 + random.nextInt(512)));
+        }
+
+        List<Drawable> drawables = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            boolean image = kind == Kind.IMAGES || (kind == Kind.MIXED && random.nextInt(4) == 0);
+            double x = random.nextDouble() * WIDTH;
+            double y = random.nextDouble() * HEIGHT;
+            Drawable drawable;
+            if (image) {
+                drawable = new ImageDrawable(images[random.nextInt(images.length)], x, y);
+                double scale = 0.02 + random.nextDouble() * 0.2;
+                drawable.scale(scale, scale, x, y);
+            } else {
+                double size = 10 + random.nextDouble() * 60;
+                Shape shape = random.nextBoolean()
+                        ? new Ellipse2D.Double(x, y, size, size)
+                        : new Rectangle2D.Double(x, y, size, size);
+                drawable = new ShapeDrawable(shape, new Color(random.nextInt(0xFFFFFF)));
+            }
+            Point2D center = drawable.getCenter();
+            drawable.rotate(random.nextDouble() * Math.PI, center.getX(), center.getY());
+            drawables.add(drawable);
+        }
+        return drawables;
+    }
+
+    static BufferedImage createImage(Random random, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setPaint(new GradientPaint(0, 0, new Color(random.nextInt(0xFFFFFF)),
+                width, height, new Color(random.nextInt(0xFFFFFF))));
+        g2d.fillRect(0, 0, width, height);
+        for (int i = 0; i < 40; i++) {
+            g2d.setColor(new Color(random.nextInt(), true));
+            g2d.fillOval(random.nextInt(width), random.nextInt(height), 20 + random.nextInt(width / 3), 20 + random.nextInt(height / 3));
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    static CanvasPanel createCanvas(List<Drawable> drawables) {
+        CanvasPanel canvas = new CanvasPanel(null);
+        canvas.setSize(WIDTH, HEIGHT);
+        for (Drawable drawable : drawables) {
+            canvas.addDrawable(drawable);
+        }
+        return canvas;
+    }
+}
@@ -0,0 +1,64 @@
+package poster;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ThumbnailBenchmark {
+    File directory;
+    File[] files;
+    ThumbnailCache cache;
+    int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("poster-thumbnails").toFile();
+        Random random = new Random(SceneGenerator.SEED);
+        files = new File[4];
+        for (int i = 0; i < files.length; i++) {
+            BufferedImage image = SceneGenerator.createImage(random, 3000, 2000);
+            BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            rgb.createGraphics().drawImage(image, 0, 0, null);
+            files[i] = new File(directory, "image" + i + ".jpg");
+            ImageIO.write(rgb, "jpg", files[i]);
+        }
+
+        File pack = new File(directory, ".thumbnails.pack");
+        ThumbnailCache writer = new ThumbnailCache(pack, Thumbnails.SIZE, Thumbnails.SIZE);
+        for (File file : files) {
+            writer.put(file, Thumbnails.read(file, Thumbnails.SIZE, Thumbnails.SIZE));
+        }
+        writer.save();
+        cache = new ThumbnailCache(pack, Thumbnails.SIZE, Thumbnails.SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public BufferedImage decodeThumbnail() throws IOException {
+        return Thumbnails.read(files[next++ % files.length], Thumbnails.SIZE, Thumbnails.SIZE);
+    }
+
+    @Benchmark
+    public BufferedImage cachedThumbnail() {
+        return cache.get(files[next++ % files.length]);
+    }
+}
@@ -0,0 +1,508 @@
+package poster;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Crash-recovery journal. On the EDT it only remembers which drawables changed; every tick it takes a
+// scene snapshot and hands it, with the positions of the changed drawables, to a background thread.
+// That thread encodes the records, appends them as a checksummed frame, mirrors them in a shadow copy
+// of the scene (encoded records in z-order), and rewrites the journal from the shadow once it has grown
+// well past the scene size. Recovery replays frames up to the first torn or corrupt one.
+//
+// Journal: magic, version, then frames of (payload length, CRC32, payload). A payload is a run of
+//   RESET                         drop everything before
+//   PUT id belowId length record  add or replace a drawable, directly above belowId (0 = bottom)
+//   REMOVE id
+//   PAGE x y width height         the page the scene is on
+class Autosave {
+    static final File DEFAULT_FILE = new File(System.getProperty("poster.autosaveFile",
+            new File(System.getProperty("user.home"), ".poster-autosave.journal").getPath()));
+    static final int INTERVAL_MILLIS = Integer.getInteger("poster.autosaveSeconds", 5) * 1000;
+    static final long COMPACT_BYTES = Long.getLong("poster.autosaveCompactKB", 4096) << 10;
+
+    private static final int MAGIC = 0x50534A4E;
+    // Records are poster file records; version 2 journals may contain text records, version 3 journals
+    // record the page.
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 8;
+
+    private static final byte RESET = 1;
+    private static final byte PUT = 2;
+    private static final byte REMOVE = 3;
+    private static final byte PAGE = 4;
+
+    private static final byte FILE_IMAGE = 1;
+    private static final byte BLOB_IMAGE = 2;
+    private static final byte INLINE_IMAGE = 3;
+
+    final File file;
+    private final CanvasPanel canvas;
+    private final Timer timer;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Touched on the EDT only.
+    private final LinkedHashSet<Drawable> changed = new LinkedHashSet<>();
+    private final List<Long> removed = new ArrayList<>();
+    private boolean pageChanged;
+
+    // Touched on the writer thread only.
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final Shadow shadow = new Shadow();
+    private FileChannel channel;
+    private long journalBytes;
+
+    Autosave(File file, CanvasPanel canvas) {
+        this.file = file;
+        this.canvas = canvas;
+        timer = new Timer(INTERVAL_MILLIS, e -> checkpoint());
+    }
+
+    // Starts a fresh journal from the current scene; any journal left from a previous session is replaced.
+    void start() {
+        reset();
+        timer.start();
+    }
+
+    void changed(Drawable drawable) {
+        changed.add(drawable);
+    }
+
+    void removed(Drawable drawable) {
+        changed.remove(drawable);
+        removed.add(drawable.id);
+    }
+
+    void pageChanged() {
+        pageChanged = true;
+    }
+
+    void reset() {
+        changed.clear();
+        removed.clear();
+        pageChanged = false;
+        List<Drawable> scene = canvas.snapshot();
+        Rectangle page = canvas.getPageBounds();
+        submit(() -> {
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(batch)) {
+                out.writeByte(RESET);
+                writePage(out, page);
+                long below = 0;
+                for (Drawable drawable : scene) {
+                    writePut(out, drawable, below);
+                    below = drawable.id;
+                }
+            }
+            append(batch.toByteArray(), true);
+        });
+    }
+
+    void checkpoint() {
+        if (changed.isEmpty() && removed.isEmpty() && !pageChanged) return;
+
+        ZOrderList order = canvas.drawableObjects;
+        int[] positions = changed.stream().mapToInt(order::indexOf).filter(zIndex -> zIndex >= 0).sorted().toArray();
+        long[] removedIds = removed.stream().mapToLong(Long::longValue).toArray();
+        List<Drawable> scene = canvas.snapshot();
+        Rectangle page = pageChanged ? canvas.getPageBounds() : null;
+        changed.clear();
+        removed.clear();
+        pageChanged = false;
+
+        submit(() -> {
+            ByteArrayOutputStream batch = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(batch)) {
+                if (page != null) writePage(out, page);
+                for (long id : removedIds) {
+                    out.writeByte(REMOVE);
+                    out.writeLong(id);
+                }
+                // Ascending z-order, so each drawable's neighbour below is already in place when it is replayed.
+                for (int zIndex : positions) {
+                    writePut(out, scene.get(zIndex), zIndex == 0 ? 0 : scene.get(zIndex - 1).id);
+                }
+            }
+            append(batch.toByteArray(), false);
+        });
+    }
+
+    // Called on a clean exit: nothing is left to recover. A journal this session never opened is not ours to delete.
+    void close() {
+        timer.stop();
+        writer.submit(() -> {
+            try {
+                if (channel == null) return;
+                channel.close();
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        });
+        writer.shutdown();
+        try {
+            writer.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writePut(DataOutputStream out, Drawable drawable, long below) throws IOException {
+        record.reset();
+        PosterDocument.writeDrawable(new DataOutputStream(record), drawable, Autosave::writeImage);
+        out.writeByte(PUT);
+        out.writeLong(drawable.id);
+        out.writeLong(below);
+        out.writeInt(record.size());
+        record.writeTo(out);
+    }
+
+    private static void writePage(DataOutputStream out, Rectangle page) throws IOException {
+        out.writeByte(PAGE);
+        out.writeInt(page.x);
+        out.writeInt(page.y);
+        out.writeInt(page.width);
+        out.writeInt(page.height);
+    }
+
+    // Images are referenced where they already live on disk; only images that exist nowhere but in
+    // memory (never the case for images added through the UI) are written inline.
+    private static void writeImage(DataOutputStream out, MipMap mipMap) throws IOException {
+        if (mipMap.source instanceof FileImageSource) {
+            out.writeByte(FILE_IMAGE);
+            writeString(out, ((FileImageSource) mipMap.source).file.getPath());
+        } else if (mipMap.source instanceof PosterDocument.Blob) {
+            PosterDocument.Blob blob = (PosterDocument.Blob) mipMap.source;
+            out.writeByte(BLOB_IMAGE);
+            writeString(out, blob.file.getPath());
+            writeString(out, blob.hash);
+            out.writeLong(blob.offset());
+            out.writeInt(blob.length);
+        } else {
+            byte[] png = PosterDocument.encode(mipMap);
+            out.writeByte(INLINE_IMAGE);
+            out.writeInt(png.length);
+            out.write(png);
+            return;
+        }
+        out.writeInt(mipMap.width);
+        out.writeInt(mipMap.height);
+    }
+
+    // A blob is looked up by its hash in the poster's current save, since a save that rewrote the file has
+    // moved it since the journal recorded its offset; failing that, the recorded offset is used if the
+    // bytes there still hash to it. Images that cannot be found are added to missing.
+    private static MipMap readImage(ByteBuffer in, ImagePool pool, Map<File, Map<String, PosterDocument.Blob>> indexes,
+                                    List<String> missing) {
+        byte kind = in.get();
+        if (kind == INLINE_IMAGE) {
+            byte[] png = new byte[in.getInt()];
+            in.get(png);
+            try {
+                BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+                if (image != null) return new MipMap(image);
+            } catch (IOException ex) {
+                // Reported as missing below.
+            }
+            missing.add("an embedded image");
+            return null;
+        }
+
+        File source = new File(readString(in));
+        if (kind == FILE_IMAGE) {
+            int width = in.getInt();
+            int height = in.getInt();
+            if (source.isFile()) return pool.get(ImageSource.of(source), width, height);
+            missing.add(source.getPath());
+            return null;
+        }
+        String hash = readString(in);
+        long offset = in.getLong();
+        int length = in.getInt();
+        int width = in.getInt();
+        int height = in.getInt();
+        PosterDocument.Blob blob = indexes.computeIfAbsent(source, poster -> {
+            try {
+                return PosterDocument.index(poster);
+            } catch (IOException ex) {
+                return Map.of();
+            }
+        }).get(hash);
+        if (blob == null && source.length() >= offset + length) {
+            PosterDocument.Blob recorded = new PosterDocument.Blob(source, hash, offset, length, width, height);
+            if (recorded.intact()) blob = recorded;
+        }
+        if (blob != null) return pool.get(blob, width, height);
+        missing.add(source.getPath() + '#' + hash.substring(0, 12));
+        return null;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort() & 0xFFFF];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private interface WriterTask {
+        void run() throws IOException;
+    }
+
+    // Waits until everything submitted so far is in the journal.
+    void flush() throws InterruptedException {
+        try {
+            writer.submit(() -> { }).get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private void submit(WriterTask task) {
+        writer.submit(() -> {
+            try {
+                task.run();
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+        });
+    }
+
+    private void append(byte[] batch, boolean fresh) throws IOException {
+        if (fresh || channel == null) {
+            if (channel != null) channel.close();
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip());
+            journalBytes = HEADER_BYTES;
+            shadow.clear();
+        }
+        shadow.apply(ByteBuffer.wrap(batch));
+        journalBytes += writeFrame(channel, batch);
+        channel.force(false);
+
+        if (journalBytes > COMPACT_BYTES && journalBytes > 2 * shadow.bytes) compact();
+    }
+
+    private void compact() throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip());
+            journalBytes = HEADER_BYTES + writeFrame(out, shadow.snapshot());
+            out.force(true);
+        }
+        channel.close();
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static long writeFrame(FileChannel channel, byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer frame = ByteBuffer.allocate(8 + payload.length);
+        frame.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        return writeFully(channel, frame);
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int bytes = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return bytes;
+    }
+
+    static boolean hasJournal(File file) {
+        return file.length() > HEADER_BYTES;
+    }
+
+    // Moves a journal that could not be recovered out of the way, so that starting a new journal does not
+    // destroy it. Returns where it went.
+    static File setAside(File file) throws IOException {
+        File aside = new File(file.getPath() + ".failed-" + System.currentTimeMillis());
+        Files.move(file.toPath(), aside.toPath());
+        return aside;
+    }
+
+    static final class Recovered {
+        final List<Drawable> drawables;
+        final Rectangle page;
+        // Images the journal refers to that are gone; the drawables showing them are left out.
+        final List<String> missing;
+
+        Recovered(List<Drawable> drawables, Rectangle page, List<String> missing) {
+            this.drawables = drawables;
+            this.page = page;
+            this.missing = missing;
+        }
+    }
+
+    static Recovered recover(File file, ImagePool pool) throws IOException {
+        ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        int version = journal.remaining() < HEADER_BYTES || journal.getInt() != MAGIC ? 0 : journal.getInt();
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Not an autosave journal: " + file);
+        }
+
+        Shadow scene = new Shadow();
+        CRC32 crc = new CRC32();
+        while (journal.remaining() >= 8) {
+            int length = journal.getInt();
+            int checksum = journal.getInt();
+            if (length < 0 || length > journal.remaining()) break;
+            byte[] payload = new byte[length];
+            journal.get(payload);
+            crc.reset();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) break;
+            scene.apply(ByteBuffer.wrap(payload));
+        }
+
+        List<Drawable> drawables = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        Map<File, Map<String, PosterDocument.Blob>> indexes = new HashMap<>();
+        PosterDocument.ImageRefReader images = in -> readImage(in, pool, indexes, missing);
+        try {
+            for (Shadow.Entry entry = scene.head; entry != null; entry = entry.next) {
+                Drawable drawable = PosterDocument.readDrawable(ByteBuffer.wrap(entry.record), images);
+                if (drawable != null) drawables.add(drawable);
+            }
+        } catch (RuntimeException ex) {
+            throw new IOException("Corrupt autosave journal: " + file, ex);
+        }
+        // Journals from before version 3 were written with the default page.
+        return new Recovered(drawables, scene.page != null ? scene.page : new Rectangle(CanvasPanel.DEFAULT_PAGE), missing);
+    }
+
+    // The scene as encoded records in z-order, kept as a linked list so a drawable can be placed
+    // directly above its neighbour in constant time.
+    static final class Shadow {
+        static final class Entry {
+            final long id;
+            byte[] record;
+            Entry previous;
+            Entry next;
+
+            Entry(long id) {
+                this.id = id;
+            }
+        }
+
+        private final Map<Long, Entry> entries = new HashMap<>();
+        Entry head;
+        Entry tail;
+        long bytes;
+        Rectangle page;
+
+        void clear() {
+            entries.clear();
+            head = null;
+            tail = null;
+            bytes = 0;
+            page = null;
+        }
+
+        void apply(ByteBuffer batch) {
+            while (batch.hasRemaining()) {
+                byte op = batch.get();
+                if (op == RESET) {
+                    clear();
+                } else if (op == PUT) {
+                    long id = batch.getLong();
+                    long below = batch.getLong();
+                    byte[] record = new byte[batch.getInt()];
+                    batch.get(record);
+                    put(id, below, record);
+                } else if (op == PAGE) {
+                    page = new Rectangle(batch.getInt(), batch.getInt(), batch.getInt(), batch.getInt());
+                } else if (op == REMOVE) {
+                    Entry entry = entries.remove(batch.getLong());
+                    if (entry != null) {
+                        unlink(entry);
+                        bytes -= entry.record.length;
+                    }
+                } else {
+                    throw new IllegalStateException("Unknown journal op " + op);
+                }
+            }
+        }
+
+        private void put(long id, long below, byte[] record) {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                entry = new Entry(id);
+                entries.put(id, entry);
+            } else {
+                unlink(entry);
+                bytes -= entry.record.length;
+            }
+            entry.record = record;
+            bytes += record.length;
+
+            Entry after = below == 0 ? null : entries.get(below);
+            if (below != 0 && after == null) after = tail;
+            entry.previous = after;
+            entry.next = after == null ? head : after.next;
+            if (entry.next != null) entry.next.previous = entry; else tail = entry;
+            if (after != null) after.next = entry; else head = entry;
+        }
+
+        private void unlink(Entry entry) {
+            if (entry.previous != null) entry.previous.next = entry.next; else head = entry.next;
+            if (entry.next != null) entry.next.previous = entry.previous; else tail = entry.previous;
+            entry.previous = null;
+            entry.next = null;
+        }
+
+        byte[] snapshot() {
+            ByteArrayOutputStream batch = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8, bytes + 32L * entries.size()));
+            try (DataOutputStream out = new DataOutputStream(batch)) {
+                out.writeByte(RESET);
+                if (page != null) writePage(out, page);
+                long below = 0;
+                for (Entry entry = head; entry != null; entry = entry.next) {
+                    out.writeByte(PUT);
+                    out.writeLong(entry.id);
+                    out.writeLong(below);
+                    out.writeInt(entry.record.length);
+                    out.write(entry.record);
+                    below = entry.id;
+                }
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+            return batch.toByteArray();
+        }
+    }
+}
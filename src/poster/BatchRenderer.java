@@ -0,0 +1,327 @@
+package poster;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+// Headless rendering of poster variants: PosterApp --batch <template> <variants.csv> <output dir> [options].
+// The CSV needs a name column (the output file name without extension) and any number of substitution
+// columns named kind:slot, where slot is a z-index into the template's top-level objects (0 = bottom):
+//   image:N   image file, relative to the CSV, fitted into the slot image's box
+//   color:N   #RRGGBB or #AARRGGBB fill for a shape or text
+//   text:N    replacement text, \n starts a new line
+//   move:N    "dx dy" in page units
+//   scale:N   factor about the object's center
+//   rotate:N  degrees about the object's center
+// Posters cover the template's page, or the page given by --page WxH in page units. One variant renders
+// per thread, each writing its strips as they are rendered, so memory stays at about one strip per thread
+// plus the shared image pool, which decodes every image once for all variants. A variant that fails leaves no output file behind.
+class BatchRenderer {
+    static final String USAGE = "Usage: PosterApp --batch <template.poster> <variants.csv> <output dir>"
+            + " [--page WxH] [--dpi N] [--format png|tiff] [--threads N]";
+
+    enum Kind { IMAGE, COLOR, TEXT, MOVE, SCALE, ROTATE }
+
+    static final class Column {
+        final int index;
+        final Kind kind;
+        final int slot;
+
+        Column(int index, Kind kind, int slot) {
+            this.index = index;
+            this.kind = kind;
+            this.slot = slot;
+        }
+    }
+
+    // Jobs only read the template while copying it, so it is shared across threads without locking once
+    // its lazy caches (text outlines in particular) have been filled by the constructor.
+    final List<Drawable> template;
+    final File baseDir;
+    final File outputDir;
+    Rectangle page = new Rectangle(CanvasPanel.DEFAULT_PAGE);
+    int dpi = 300;
+    String format = "png";
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    private final List<Column> columns = new ArrayList<>();
+    private int nameColumn = -1;
+    private final ConcurrentHashMap<File, FutureTask<MipMap>> images = new ConcurrentHashMap<>();
+
+    BatchRenderer(List<Drawable> template, File baseDir, File outputDir) {
+        this.template = template;
+        this.baseDir = baseDir;
+        this.outputDir = outputDir;
+        for (Drawable drawable : template) {
+            drawable.getBounds();
+        }
+    }
+
+    static int run(String[] args) {
+        if (args.length < 3) {
+            System.err.println(USAGE);
+            return 2;
+        }
+        try {
+            File templateFile = new File(args[0]);
+            File csv = new File(args[1]);
+            PosterDocument.Loaded loaded = PosterDocument.load(templateFile, ImagePool.SHARED);
+            BatchRenderer batch = new BatchRenderer(loaded.drawables, csv.getAbsoluteFile().getParentFile(), new File(args[2]));
+            batch.page = loaded.page;
+            for (int i = 3; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 == args.length) throw new IllegalArgumentException("Missing value for " + option);
+                String value = args[++i];
+                switch (option) {
+                    case "--page" -> batch.page = parsePage(value);
+                    case "--dpi" -> batch.dpi = Integer.parseInt(value);
+                    case "--format" -> batch.format = value.toLowerCase(Locale.ROOT);
+                    case "--threads" -> batch.threads = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("Unknown option " + option);
+                }
+            }
+
+            List<List<String>> rows = readCsv(csv);
+            if (rows.isEmpty()) throw new IllegalArgumentException(csv + " has no header row");
+            batch.setHeader(rows.get(0));
+            return batch.render(rows.subList(1, rows.size()));
+        } catch (IllegalArgumentException | IOException ex) {
+            System.err.println(ex.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+    }
+
+    void setHeader(List<String> header) {
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim();
+            if (name.equalsIgnoreCase("name")) {
+                nameColumn = i;
+                continue;
+            }
+            int colon = name.indexOf(':');
+            if (colon < 0) throw new IllegalArgumentException("Column " + name + " is not name or kind:slot");
+            Kind kind;
+            int slot;
+            try {
+                kind = Kind.valueOf(name.substring(0, colon).trim().toUpperCase(Locale.ROOT));
+                slot = Integer.parseInt(name.substring(colon + 1).trim());
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Column " + name + " is not name or kind:slot");
+            }
+            if (slot < 0 || slot >= template.size()) {
+                throw new IllegalArgumentException("Column " + name + ": the template has " + template.size() + " objects");
+            }
+            Drawable target = template.get(slot);
+            if (kind == Kind.IMAGE && !(target instanceof ImageDrawable)) {
+                throw new IllegalArgumentException("Column " + name + ": object " + slot + " is not an image");
+            }
+            if (kind == Kind.COLOR && !(target instanceof ShapeDrawable) && !(target instanceof TextDrawable)) {
+                throw new IllegalArgumentException("Column " + name + ": object " + slot + " is not a shape or text");
+            }
+            if (kind == Kind.TEXT && !(target instanceof TextDrawable)) {
+                throw new IllegalArgumentException("Column " + name + ": object " + slot + " is not text");
+            }
+            columns.add(new Column(i, kind, slot));
+        }
+        if (nameColumn < 0) throw new IllegalArgumentException("The CSV needs a name column");
+    }
+
+    // Returns the process exit code: 0 when every variant was written, 1 otherwise.
+    int render(List<List<String>> rows) {
+        if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+            System.err.println("Cannot create " + outputDir);
+            return 1;
+        }
+        long start = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        List<Future<?>> jobs = new ArrayList<>(rows.size());
+        for (List<String> row : rows) {
+            jobs.add(workers.submit(() -> {
+                renderVariant(row);
+                return null;
+            }));
+        }
+        workers.shutdown();
+
+        int failed = 0;
+        for (int i = 0; i < jobs.size(); i++) {
+            try {
+                jobs.get(i).get();
+            } catch (ExecutionException ex) {
+                failed++;
+                System.err.println("Row " + (i + 2) + ": " + ex.getCause().getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                workers.shutdownNow();
+                return 1;
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        int written = rows.size() - failed;
+        System.out.printf(Locale.ROOT, "Rendered %d of %d posters in %.2f s (%.2f posters/s, %d threads)%n",
+                written, rows.size(), seconds, written / seconds, threads);
+        return failed == 0 ? 0 : 1;
+    }
+
+    void renderVariant(List<String> row) throws IOException {
+        String name = cell(row, nameColumn);
+        if (name.isEmpty() || name.contains("/") || name.contains(File.separator)) {
+            throw new IllegalArgumentException("Invalid name '" + name + "'");
+        }
+        List<Drawable> scene = new ArrayList<>(template.size());
+        for (Drawable drawable : template) {
+            scene.add(drawable.copy());
+        }
+        for (Column column : columns) {
+            String value = cell(row, column.index);
+            if (!value.isEmpty()) apply(scene, column, value);
+        }
+
+        PosterExporter exporter = new PosterExporter(scene, page, PosterExporter.scaleForDpi(dpi));
+        exporter.pool = null;
+        exporter.write(new File(outputDir, name + "." + format), format);
+    }
+
+    private void apply(List<Drawable> scene, Column column, String value) throws IOException {
+        Drawable target = scene.get(column.slot);
+        Rectangle bounds = target.getBounds();
+        double cx = bounds.getCenterX();
+        double cy = bounds.getCenterY();
+        switch (column.kind) {
+            case IMAGE -> scene.set(column.slot, replaceImage((ImageDrawable) target, image(new File(baseDir, value))));
+            case COLOR -> UndoHistory.ColorEdit.setColor(target, parseColor(value));
+            case TEXT -> ((TextDrawable) target).setText(value.replace("\\n", "\n"));
+            case MOVE -> {
+                String[] parts = value.trim().split("\\s+");
+                if (parts.length != 2) throw new IllegalArgumentException("move needs 'dx dy', got '" + value + "'");
+                target.translate(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]));
+            }
+            case SCALE -> {
+                double factor = Double.parseDouble(value.trim());
+                target.scale(factor, factor, cx, cy);
+            }
+            case ROTATE -> target.rotate(Math.toRadians(Double.parseDouble(value.trim())), cx, cy);
+        }
+    }
+
+    // The new image is fitted into the slot image's box, keeping its aspect ratio and centered.
+    static ImageDrawable replaceImage(ImageDrawable slot, MipMap image) {
+        ImageDrawable replacement = new ImageDrawable(image, 0, 0);
+        double fit = Math.min((double) slot.mipMap.width / image.width, (double) slot.mipMap.height / image.height);
+        AffineTransform transform = new AffineTransform(slot.transform);
+        transform.translate((slot.mipMap.width - image.width * fit) / 2, (slot.mipMap.height - image.height * fit) / 2);
+        transform.scale(fit, fit);
+        replacement.transform = transform;
+        return replacement;
+    }
+
+    // Variants that share an image wait for a single decode instead of each decoding it. Only decodes in
+    // flight are tracked here; a decoded image stays shared through the pool while any variant uses it.
+    private MipMap image(File file) throws IOException {
+        File key = file.getAbsoluteFile();
+        FutureTask<MipMap> load = new FutureTask<>(() -> ImagePool.SHARED.get(ImageSource.of(file)));
+        FutureTask<MipMap> existing = images.putIfAbsent(key, load);
+        if (existing == null) {
+            existing = load;
+            load.run();
+            images.remove(key, load);
+        }
+        try {
+            return existing.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading " + file);
+        } catch (ExecutionException ex) {
+            throw new IOException("Cannot load " + file + ": " + ex.getCause().getMessage(), ex.getCause());
+        }
+    }
+
+    static Rectangle parsePage(String value) {
+        String[] size = value.trim().toLowerCase(Locale.ROOT).split("x");
+        try {
+            if (size.length == 2) {
+                int width = Integer.parseInt(size[0].trim());
+                int height = Integer.parseInt(size[1].trim());
+                if (width > 0 && height > 0) return new Rectangle(0, 0, width, height);
+            }
+        } catch (NumberFormatException ex) {
+            // Reported below.
+        }
+        throw new IllegalArgumentException("Invalid page size '" + value + "', expected WxH");
+    }
+
+    static Color parseColor(String value) {
+        String hex = value.trim();
+        if (hex.startsWith("#")) hex = hex.substring(1);
+        if (hex.length() != 6 && hex.length() != 8) throw new IllegalArgumentException("Invalid color '" + value + "'");
+        long argb = Long.parseLong(hex, 16);
+        return new Color((int) (hex.length() == 6 ? 0xFF000000L | argb : argb), true);
+    }
+
+    private static String cell(List<String> row, int index) {
+        return index < row.size() ? row.get(index).trim() : "";
+    }
+
+    // RFC 4180: comma separated, fields may be quoted and then contain commas, doubled quotes and newlines.
+    static List<List<String>> readCsv(File file) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            List<String> row = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean empty = true;
+            int c;
+            while ((c = reader.read()) != -1) {
+                if (quoted) {
+                    if (c != '"') {
+                        field.append((char) c);
+                    } else {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                    empty = false;
+                } else if (c == ',') {
+                    row.add(field.toString());
+                    field.setLength(0);
+                    empty = false;
+                } else if (c == '\n') {
+                    row.add(field.toString());
+                    field.setLength(0);
+                    if (!empty) rows.add(row);
+                    row = new ArrayList<>();
+                    empty = true;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                    empty = false;
+                }
+            }
+            if (!empty) {
+                row.add(field.toString());
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,957 @@
+package poster;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+class CanvasPanel extends JPanel {
+    PosterApp posterApp;
+    ZOrderList drawableObjects;
+    LinkedHashSet<Drawable> selection = new LinkedHashSet<>();
+    Rectangle selectionBounds;
+    QuadTree index = new QuadTree();
+    ArrayList<Drawable> pickCandidates = new ArrayList<>();
+    boolean batching;
+    Rectangle batchDirty;
+    LinkedHashMap<Drawable, Drawable.TransformState> dragOrigins;
+    UndoHistory history = new UndoHistory();
+    Autosave autosave;
+
+    // Immutable mirror of drawableObjects for background readers. Entries listed in unfrozen still point
+    // at the live drawable and are swapped for copies when the next snapshot is taken.
+    PersistentList<Drawable> frozen = PersistentList.empty();
+    HashSet<Drawable> unfrozen = new HashSet<>();
+
+    Drawable.Listener repaintListener = (drawable, dirtyRegion) -> {
+        unfrozen.add(drawable);
+        if (autosave != null) autosave.changed(drawable);
+        if (selection.contains(drawable)) {
+            // A drag re-indexes the selection once, on release.
+            if (dragOrigins == null) index.update(drawable);
+            selectionBounds = null;
+        } else {
+            index.update(drawable);
+            invalidateLayers();
+        }
+        if (batching) {
+            batchDirty = batchDirty == null ? new Rectangle(dirtyRegion) : batchDirty.union(dirtyRegion);
+        } else {
+            repaintRegion(dirtyRegion);
+        }
+    };
+
+    BufferedImage belowLayer;
+    BufferedImage aboveLayer;
+    boolean layersValid;
+    int layersFrom;
+    int layersTo;
+    boolean timingDraws;
+    Timer overlayTimer = new Timer(500, e -> repaint(OVERLAY_BOUNDS));
+
+    static final Rectangle OVERLAY_BOUNDS = new Rectangle(0, 0, 260, 130);
+
+    Comparator<Drawable> topmostFirst = Comparator.comparingInt((Drawable d) -> drawableObjects.indexOf(d)).reversed();
+
+    static final int HANDLE_MARGIN = 8;
+    static final int ROTATE_HANDLE_MARGIN = 36;
+
+    Point lastMouse;
+    enum DragMode { NONE, MOVE, RESIZE, ROTATE, MARQUEE, PAN }
+    DragMode dragMode = DragMode.NONE;
+
+    // Drag events are coalesced to one update per frame, and every update is computed from the
+    // transforms saved when the drag started rather than accumulated from the previous event.
+    static final int DRAG_FRAME_MILLIS = 16;
+    Timer dragTimer = new Timer(DRAG_FRAME_MILLIS, e -> applyDrag());
+    Point pendingDrag;
+    Rectangle dragBounds;
+    AffineTransform dragTransform;
+    Point marqueeStart;
+    Rectangle marquee;
+    boolean marqueeExtends;
+
+    Rectangle resizeHandle = new Rectangle();
+    Ellipse2D rotateHandle = new Ellipse2D.Double();
+    // Screen-space scratch rectangles for handle and outline painting, which happens on the EDT only.
+    private final Rectangle screenBounds = new Rectangle();
+    private final Rectangle screenMember = new Rectangle();
+    int activeHandle = -1;
+
+    // Viewport: screen = document * zoom + pan. Handles and the marquee outline are drawn in screen space.
+    static final double MIN_ZOOM = 0.02;
+    static final double MAX_ZOOM = 32;
+    static final Color PASTEBOARD = new Color(0xD8D8D8);
+    // Drawables smaller than this on screen are drawn as filled bounds.
+    static final int PROXY_PIXELS = Integer.getInteger("poster.proxyPixels", 3);
+
+    static final Font TEXT_FONT = new Font(Font.SANS_SERIF, Font.BOLD, 48);
+
+    // The page new posters start on; poster files and the autosave journal record their own.
+    static final Rectangle DEFAULT_PAGE = new Rectangle(0, 0, Integer.getInteger("poster.pageWidth", 1200),
+            Integer.getInteger("poster.pageHeight", 800));
+
+    Rectangle page = new Rectangle(DEFAULT_PAGE);
+    // The style new text gets: the one chosen last in the text style dialog.
+    Font textFont = TEXT_FONT;
+    float textWrapWidth;
+    double zoom = 1;
+    double panX;
+    double panY;
+    AffineTransform view = new AffineTransform();
+    ArrayList<Drawable> visible = new ArrayList<>();
+
+    boolean interactive;
+    IdleRefiner refiner = new IdleRefiner(this);
+
+    public CanvasPanel(PosterApp posterApp) {
+        this.posterApp = posterApp;
+        drawableObjects = new ZOrderList();
+        setBackground(PASTEBOARD);
+        if (Instrumentation.enabled) overlayTimer.start();
+        dragTimer.setRepeats(false);
+
+        addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                Instrumentation.inputReceived();
+                beginInteraction();
+                lastMouse = e.getPoint();
+                activeHandle = -1;
+                boolean extend = e.isShiftDown();
+
+                if (e.getButton() == MouseEvent.BUTTON2) {
+                    dragMode = DragMode.PAN;
+                    return;
+                }
+
+                if (!selection.isEmpty() && !extend) {
+                    updateHandles();
+                    if (resizeHandle.contains(lastMouse)) {
+                        dragMode = DragMode.RESIZE;
+                        return;
+                    }
+                    if (rotateHandle.contains(lastMouse)) {
+                        dragMode = DragMode.ROTATE;
+                        return;
+                    }
+                }
+
+                Point documentPoint = toDocument(lastMouse);
+                Drawable hit = drawableAt(documentPoint);
+                if (e.getButton() == MouseEvent.BUTTON3) {
+                    if (hit != null) {
+                        removeDrawables(selection.contains(hit) ? new ArrayList<>(selection) : List.of(hit));
+                    }
+                    return;
+                }
+
+                if (hit == null) {
+                    if (!extend) select(null);
+                    if (e.getButton() == MouseEvent.BUTTON1) {
+                        dragMode = DragMode.MARQUEE;
+                        marqueeStart = documentPoint;
+                        marquee = new Rectangle(documentPoint);
+                        marqueeExtends = extend;
+                    }
+                } else if (extend) {
+                    LinkedHashSet<Drawable> toggled = new LinkedHashSet<>(selection);
+                    if (!toggled.remove(hit)) toggled.add(hit);
+                    setSelection(toggled);
+                    dragMode = toggled.contains(hit) ? DragMode.MOVE : DragMode.NONE;
+                } else {
+                    if (!selection.contains(hit)) select(hit);
+                    dragMode = DragMode.MOVE;
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                Instrumentation.inputReceived();
+                beginInteraction();
+                dragTimer.stop();
+                if (pendingDrag != null) applyDrag();
+                if (dragMode == DragMode.MARQUEE) {
+                    repaintRegion(marquee);
+                    LinkedHashSet<Drawable> selected = marqueeExtends ? new LinkedHashSet<>(selection) : new LinkedHashSet<>();
+                    selected.addAll(drawablesInside(marquee));
+                    setSelection(selected);
+                    marquee = null;
+                } else if (dragOrigins != null) {
+                    commitDrag();
+                }
+                dragMode = DragMode.NONE;
+                activeHandle = -1;
+            }
+        });
+
+        addMouseMotionListener(new MouseMotionAdapter() {
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                Instrumentation.inputReceived();
+                beginInteraction();
+                if (dragMode == DragMode.NONE) return;
+                if (selection.isEmpty() && dragMode != DragMode.MARQUEE && dragMode != DragMode.PAN) return;
+                pendingDrag = e.getPoint();
+                if (!dragTimer.isRunning()) dragTimer.start();
+            }
+        });
+
+        addMouseWheelListener(e -> {
+            beginInteraction();
+            zoomAt(Math.pow(1.1, -e.getPreciseWheelRotation()), e.getPoint());
+        });
+    }
+
+    // Frames are painted with RenderQuality.FAST from the first input event until the refiner has seen
+    // the canvas idle; the refiner then re-renders the view at HIGH in the background.
+    void beginInteraction() {
+        interactive = true;
+        refiner.invalidate();
+    }
+
+    boolean interacting() {
+        return dragMode != DragMode.NONE;
+    }
+
+    void endInteraction() {
+        if (!interactive) return;
+        interactive = false;
+        invalidateLayers();
+        repaint();
+    }
+
+    RenderQuality quality() {
+        return interactive ? RenderQuality.FAST : RenderQuality.NORMAL;
+    }
+
+    void setView(double zoom, double panX, double panY) {
+        this.zoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom));
+        this.panX = panX;
+        this.panY = panY;
+        view.setTransform(this.zoom, 0, 0, this.zoom, panX, panY);
+        invalidateLayers();
+        refiner.invalidate();
+        repaint();
+    }
+
+    // Zooms keeping the document point under the anchor in place.
+    void zoomAt(double factor, Point2D anchor) {
+        double target = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        double x = (anchor.getX() - panX) / zoom;
+        double y = (anchor.getY() - panY) / zoom;
+        setView(target, anchor.getX() - x * target, anchor.getY() - y * target);
+    }
+
+    void zoomBy(double factor) {
+        zoomAt(factor, new Point2D.Double(getWidth() / 2.0, getHeight() / 2.0));
+    }
+
+    void fitPage() {
+        if (getWidth() <= 0 || getHeight() <= 0) return;
+        double fit = 0.95 * Math.min(getWidth() / page.getWidth(), getHeight() / page.getHeight());
+        setView(fit, (getWidth() - page.width * fit) / 2 - page.x * fit, (getHeight() - page.height * fit) / 2 - page.y * fit);
+    }
+
+    Point toDocument(Point screen) {
+        return new Point((int) Math.floor((screen.x - panX) / zoom), (int) Math.floor((screen.y - panY) / zoom));
+    }
+
+    Point2D toDocument2D(Point screen) {
+        return new Point2D.Double((screen.x - panX) / zoom, (screen.y - panY) / zoom);
+    }
+
+    Rectangle toScreen(Rectangle document) {
+        return toScreen(document, new Rectangle());
+    }
+
+    // Writes into screen and returns it, for callers that reuse one rectangle per frame.
+    Rectangle toScreen(Rectangle document, Rectangle screen) {
+        int x = (int) Math.floor(document.x * zoom + panX);
+        int y = (int) Math.floor(document.y * zoom + panY);
+        screen.setBounds(x, y, (int) Math.ceil((document.x + document.width) * zoom + panX) - x,
+                (int) Math.ceil((document.y + document.height) * zoom + panY) - y);
+        return screen;
+    }
+
+    Rectangle toDocument(Rectangle screen) {
+        Point origin = toDocument(screen.getLocation());
+        return new Rectangle(origin.x, origin.y, (int) Math.ceil(screen.width / zoom) + 2, (int) Math.ceil(screen.height / zoom) + 2);
+    }
+
+    private void applyDrag() {
+        Point point = pendingDrag;
+        pendingDrag = null;
+        if (point == null) return;
+
+        if (dragMode == DragMode.PAN) {
+            setView(zoom, panX + point.x - lastMouse.x, panY + point.y - lastMouse.y);
+            lastMouse = point;
+            return;
+        }
+        if (dragMode == DragMode.MARQUEE) {
+            Rectangle previous = marquee;
+            marquee = new Rectangle(marqueeStart);
+            marquee.add(toDocument(point));
+            repaintRegion(previous.union(marquee));
+            return;
+        }
+        if (selection.isEmpty()) return;
+
+        if (dragOrigins == null) {
+            dragOrigins = new LinkedHashMap<>();
+            for (Drawable drawable : selection) {
+                dragOrigins.put(drawable, drawable.saveTransform());
+            }
+            dragBounds = new Rectangle(getSelectionBounds());
+        }
+
+        AffineTransform drag = null;
+        if (dragMode == DragMode.MOVE) {
+            drag = AffineTransform.getTranslateInstance((point.x - lastMouse.x) / zoom, (point.y - lastMouse.y) / zoom);
+        } else if (dragMode == DragMode.RESIZE) {
+            Point2D corner = toDocument2D(point);
+            double sx = (corner.getX() - dragBounds.x) / dragBounds.width;
+            double sy = (corner.getY() - dragBounds.y) / dragBounds.height;
+            if (sx > 0 && sy > 0) {
+                drag = new AffineTransform();
+                drag.translate(dragBounds.x, dragBounds.y);
+                drag.scale(sx, sy);
+                drag.translate(-dragBounds.x, -dragBounds.y);
+            }
+        } else if (dragMode == DragMode.ROTATE) {
+            double cx = dragBounds.getCenterX();
+            double cy = dragBounds.getCenterY();
+            Point2D current = toDocument2D(point);
+            Point2D start = toDocument2D(lastMouse);
+            double angle = Math.atan2(current.getY() - cy, current.getX() - cx) - Math.atan2(start.getY() - cy, start.getX() - cx);
+            drag = AffineTransform.getRotateInstance(angle, cx, cy);
+        }
+        if (drag == null) return;
+
+        dragTransform = drag;
+        transformAll(selection, drawable -> drawable.restoreTransform(dragOrigins.get(drawable), dragTransform));
+    }
+
+    private void commitDrag() {
+        for (Drawable drawable : dragOrigins.keySet()) {
+            index.update(drawable);
+        }
+        if (dragTransform != null) {
+            history.record(new UndoHistory.TransformEdit(dragOrigins.keySet().toArray(new Drawable[0]), dragTransform, false));
+        }
+        dragOrigins = null;
+        dragBounds = null;
+        dragTransform = null;
+    }
+
+    private void updateHandles() {
+        if (selection.isEmpty()) return;
+        Rectangle bounds = toScreen(getSelectionBounds(), screenBounds);
+        int size = 8;
+        resizeHandle.setBounds(bounds.x + bounds.width - size / 2, bounds.y + bounds.height - size / 2, size, size);
+
+        int offset = 30;
+        rotateHandle.setFrame(bounds.getCenterX() - size / 2, bounds.y - offset - size / 2, size, size);
+    }
+
+    Rectangle getSelectionBounds() {
+        if (selectionBounds == null && !selection.isEmpty()) {
+            Rectangle union = null;
+            for (Drawable drawable : selection) {
+                union = union == null ? new Rectangle(drawable.getBounds()) : union.union(drawable.getBounds());
+            }
+            selectionBounds = union;
+        }
+        return selectionBounds;
+    }
+
+    void setSelection(Collection<? extends Drawable> drawables) {
+        if (selection.size() == drawables.size() && selection.containsAll(drawables)) return;
+
+        Rectangle previous = getSelectionBounds();
+        selection.clear();
+        selection.addAll(drawables);
+        selectionBounds = null;
+        invalidateLayers();
+
+        if (previous != null) repaintRegion(previous);
+        if (!selection.isEmpty()) {
+            updateHandles();
+            repaintRegion(getSelectionBounds());
+        }
+        if (posterApp != null) posterApp.updateButtonPanel(!selection.isEmpty());
+    }
+
+    void transformSelection(AffineTransform delta) {
+        if (selection.isEmpty()) return;
+        Drawable[] targets = selection.toArray(new Drawable[0]);
+        transformDrawables(targets, delta);
+        history.record(new UndoHistory.TransformEdit(targets, delta, true));
+    }
+
+    void transformDrawables(Drawable[] targets, AffineTransform delta) {
+        transformAll(Arrays.asList(targets), drawable -> drawable.transformBy(delta));
+    }
+
+    private void transformAll(Iterable<Drawable> targets, Consumer<Drawable> change) {
+        batching = true;
+        batchDirty = null;
+        try {
+            for (Drawable drawable : targets) {
+                change.accept(drawable);
+            }
+        } finally {
+            batching = false;
+        }
+        selectionBounds = null;
+        updateHandles();
+        if (batchDirty != null) repaintRegion(batchDirty);
+    }
+
+    void groupSelection() {
+        if (selection.size() < 2) return;
+        List<Drawable> members = new ArrayList<>(selection);
+        members.sort(Comparator.comparingInt(drawableObjects::indexOf));
+        int top = drawableObjects.indexOf(members.get(members.size() - 1));
+        GroupDrawable group;
+        history.beginCompound();
+        try {
+            removeDrawables(members);
+            group = new GroupDrawable(members);
+            addDrawable(group, top - members.size() + 1);
+        } finally {
+            history.endCompound();
+        }
+        select(group);
+    }
+
+    void ungroupSelection() {
+        List<Drawable> released = new ArrayList<>();
+        history.beginCompound();
+        try {
+            for (Drawable drawable : new ArrayList<>(selection)) {
+                if (drawable instanceof GroupDrawable) {
+                    int at = drawableObjects.indexOf(drawable);
+                    removeDrawable(drawable);
+                    for (Drawable child : ((GroupDrawable) drawable).children) {
+                        addDrawable(child, at++);
+                        released.add(child);
+                    }
+                } else {
+                    released.add(drawable);
+                }
+            }
+        } finally {
+            history.endCompound();
+        }
+        setSelection(released);
+    }
+
+    void select(Drawable drawable) {
+        setSelection(drawable == null ? List.of() : List.of(drawable));
+    }
+
+    Drawable drawableAt(Point p) {
+        if (!Instrumentation.timingPicks()) return pick(p);
+        Instrumentation.PickEvent event = new Instrumentation.PickEvent();
+        long start = System.nanoTime();
+        event.begin();
+        Drawable hit = pick(p);
+        Instrumentation.pickFinished(start, pickCandidates.size(), hit != null, event);
+        return hit;
+    }
+
+    private Drawable pick(Point p) {
+        pickCandidates.clear();
+        index.query(p, pickCandidates);
+        pickCandidates.sort(topmostFirst);
+        Drawable hit = null;
+        for (Drawable drawable : pickCandidates) {
+            if (drawable.contains(p)) {
+                hit = drawable;
+                break;
+            }
+        }
+        return hit;
+    }
+
+    List<Drawable> drawablesInside(Rectangle region) {
+        pickCandidates.clear();
+        index.query(region, pickCandidates);
+        List<Drawable> inside = new ArrayList<>();
+        for (Drawable drawable : pickCandidates) {
+            if (region.contains(drawable.getBounds())) inside.add(drawable);
+        }
+        inside.sort(Comparator.comparingInt(drawableObjects::indexOf));
+        return inside;
+    }
+
+    public void addDrawable(Drawable drawable) {
+        addDrawable(drawable, drawableObjects.size());
+    }
+
+    void addDrawable(Drawable drawable, int zIndex) {
+        drawableObjects.add(zIndex, drawable);
+        frozen = frozen.plus(zIndex, drawable);
+        unfrozen.add(drawable);
+        drawable.listener = repaintListener;
+        index.insert(drawable);
+        invalidateLayers();
+        repaintRegion(drawable.getBounds());
+        if (autosave != null) autosave.changed(drawable);
+        history.record(new UndoHistory.AddEdit(drawable, zIndex));
+    }
+
+    public void removeDrawable(Drawable drawable) {
+        int zIndex = drawableObjects.indexOf(drawable);
+        if (zIndex < 0) return;
+        drawableObjects.remove(zIndex);
+        frozen = frozen.minus(zIndex);
+        unfrozen.remove(drawable);
+        drawable.listener = null;
+        index.remove(drawable);
+        invalidateLayers();
+        repaintRegion(drawable.getBounds());
+        if (selection.contains(drawable)) {
+            LinkedHashSet<Drawable> remaining = new LinkedHashSet<>(selection);
+            remaining.remove(drawable);
+            setSelection(remaining);
+        }
+        if (autosave != null) autosave.removed(drawable);
+        history.record(new UndoHistory.RemoveEdit(drawable, zIndex));
+    }
+
+    void removeDrawables(Collection<? extends Drawable> drawables) {
+        history.beginCompound();
+        try {
+            for (Drawable drawable : drawables) {
+                removeDrawable(drawable);
+            }
+        } finally {
+            history.endCompound();
+        }
+    }
+
+    // Swaps in a loaded scene on its page; the undo history starts over.
+    void replaceDrawables(List<Drawable> drawables, Rectangle page) {
+        select(null);
+        this.page = new Rectangle(page);
+        for (Drawable drawable : drawableObjects) {
+            drawable.listener = null;
+        }
+        drawableObjects.clear();
+        index = new QuadTree();
+        for (Drawable drawable : drawables) {
+            drawableObjects.add(drawable);
+            drawable.listener = repaintListener;
+            index.insert(drawable);
+        }
+        frozen = PersistentList.of(drawables);
+        unfrozen.clear();
+        unfrozen.addAll(drawables);
+        history.clear();
+        if (autosave != null) autosave.reset();
+        invalidateLayers();
+        repaint();
+    }
+
+    // A consistent, immutable view of the scene that any thread may read while editing goes on.
+    // Costs O(k log n) for the k drawables changed since the previous snapshot.
+    List<Drawable> snapshot() {
+        if (unfrozen.size() > drawableObjects.size() / 8) {
+            List<Drawable> copies = new ArrayList<>(drawableObjects.size());
+            Iterator<Drawable> previous = frozen.iterator();
+            for (Drawable drawable : drawableObjects) {
+                Drawable copy = previous.next();
+                copies.add(unfrozen.contains(drawable) ? drawable.copy() : copy);
+            }
+            frozen = PersistentList.of(copies);
+        } else {
+            for (Drawable drawable : unfrozen) {
+                frozen = frozen.with(drawableObjects.indexOf(drawable), drawable.copy());
+            }
+        }
+        unfrozen.clear();
+        return frozen;
+    }
+
+    void moveSelectionLayer(int offset) {
+        moveSelection(() -> drawableObjects.moveAllBy(selection, offset));
+    }
+
+    void moveSelectionToFront() {
+        moveSelection(() -> drawableObjects.moveAllToFront(selection));
+    }
+
+    void moveSelectionToBack() {
+        moveSelection(() -> drawableObjects.moveAllToBack(selection));
+    }
+
+    // The moves keep the selection's relative order, so sorting by the old index also sorts the new ones.
+    private void moveSelection(BooleanSupplier move) {
+        Drawable[] targets = selection.toArray(new Drawable[0]);
+        Arrays.sort(targets, Comparator.comparingInt(drawableObjects::indexOf));
+        int[] from = new int[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            from[i] = drawableObjects.indexOf(targets[i]);
+        }
+        if (!move.getAsBoolean()) return;
+
+        int[] to = new int[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            to[i] = drawableObjects.indexOf(targets[i]);
+        }
+        history.record(new UndoHistory.ZOrderEdit(targets, from, to));
+        if (autosave != null) selection.forEach(autosave::changed);
+
+        // Removing in descending order and inserting in ascending order keeps every index valid.
+        Drawable[] moved = new Drawable[targets.length];
+        for (int i = targets.length - 1; i >= 0; i--) {
+            moved[i] = frozen.get(from[i]);
+            frozen = frozen.minus(from[i]);
+        }
+        for (int i = 0; i < targets.length; i++) {
+            frozen = frozen.plus(to[i], moved[i]);
+        }
+        layerChanged(getSelectionBounds());
+    }
+
+    // Puts targets at the given ascending z-indices; used to replay z-order edits.
+    void placeDrawables(Drawable[] targets, int[] zIndices) {
+        Rectangle dirty = null;
+        Drawable[] moved = new Drawable[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            int at = drawableObjects.indexOf(targets[i]);
+            drawableObjects.remove(at);
+            moved[i] = frozen.get(at);
+            frozen = frozen.minus(at);
+            dirty = dirty == null ? new Rectangle(targets[i].getBounds()) : dirty.union(targets[i].getBounds());
+        }
+        for (int i = 0; i < targets.length; i++) {
+            drawableObjects.add(zIndices[i], targets[i]);
+            frozen = frozen.plus(zIndices[i], moved[i]);
+            if (autosave != null) autosave.changed(targets[i]);
+        }
+        if (dirty != null) layerChanged(dirty);
+    }
+
+    private void layerChanged(Rectangle region) {
+        invalidateLayers();
+        repaintRegion(region);
+    }
+
+    void fillSelection(Color color) {
+        List<Drawable> filled = new ArrayList<>();
+        for (Drawable drawable : selection) {
+            Color current = UndoHistory.ColorEdit.colorOf(drawable);
+            if (current != null && !color.equals(current)) filled.add(drawable);
+        }
+        if (filled.isEmpty()) return;
+
+        Drawable[] targets = filled.toArray(new Drawable[0]);
+        Color[] before = new Color[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            before[i] = UndoHistory.ColorEdit.colorOf(targets[i]);
+            UndoHistory.ColorEdit.setColor(targets[i], color);
+        }
+        history.record(new UndoHistory.ColorEdit(targets, before, color));
+    }
+
+    void addText(String text, Color color) {
+        TextDrawable drawable = new TextDrawable(text, textFont, color, textWrapWidth);
+        Point center = toDocument(new Point(getWidth() / 2, getHeight() / 2));
+        Rectangle bounds = drawable.getBounds();
+        drawable.translate(center.x - bounds.getCenterX(), center.y - bounds.getCenterY());
+        addDrawable(drawable);
+        select(drawable);
+    }
+
+    TextDrawable selectedText() {
+        return selection.size() == 1 && selection.iterator().next() instanceof TextDrawable
+                ? (TextDrawable) selection.iterator().next() : null;
+    }
+
+    void editText(TextDrawable drawable, String text) {
+        if (text.equals(drawable.text)) return;
+        String before = drawable.text;
+        drawable.setText(text);
+        history.record(new UndoHistory.TextEdit(drawable, before, text));
+    }
+
+    void styleText(TextDrawable drawable, Font font, float wrapWidth) {
+        if (font.equals(drawable.font) && wrapWidth == drawable.wrapWidth) return;
+        Font beforeFont = drawable.font;
+        float beforeWrapWidth = drawable.wrapWidth;
+        drawable.setStyle(font, wrapWidth);
+        history.record(new UndoHistory.StyleEdit(drawable, beforeFont, beforeWrapWidth, font, wrapWidth));
+    }
+
+    void undo() {
+        history.undo(this);
+    }
+
+    void redo() {
+        history.redo(this);
+    }
+
+    Rectangle getPageBounds() {
+        return new Rectangle(page);
+    }
+
+    void resizePage(Rectangle bounds) {
+        if (bounds.equals(page)) return;
+        history.record(new UndoHistory.PageEdit(getPageBounds(), new Rectangle(bounds)));
+        setPage(bounds);
+    }
+
+    void setPage(Rectangle bounds) {
+        page = new Rectangle(bounds);
+        if (autosave != null) autosave.pageChanged();
+        invalidateLayers();
+        repaint();
+    }
+
+    // Takes a region in document coordinates.
+    void repaintRegion(Rectangle region) {
+        refiner.invalidate();
+        Rectangle screen = toScreen(region);
+        repaint(screen.x - HANDLE_MARGIN, screen.y - ROTATE_HANDLE_MARGIN,
+                screen.width + 2 * HANDLE_MARGIN, screen.height + HANDLE_MARGIN + ROTATE_HANDLE_MARGIN);
+    }
+
+    void invalidateLayers() {
+        layersValid = false;
+    }
+
+    // Objects below the lowest selected one go into belowLayer, objects above the highest selected one
+    // into aboveLayer; everything in between is drawn live.
+    private void updateLayers(double deviceScale) {
+        int width = Math.max(1, (int) Math.ceil(getWidth() * deviceScale));
+        int height = Math.max(1, (int) Math.ceil(getHeight() * deviceScale));
+        if (layersValid && belowLayer != null && belowLayer.getWidth() == width && belowLayer.getHeight() == height) {
+            return;
+        }
+
+        layersFrom = Integer.MAX_VALUE;
+        layersTo = -1;
+        for (Drawable drawable : selection) {
+            int zIndex = drawableObjects.indexOf(drawable);
+            layersFrom = Math.min(layersFrom, zIndex);
+            layersTo = Math.max(layersTo, zIndex);
+        }
+
+        if (belowLayer == null || belowLayer.getWidth() != width || belowLayer.getHeight() != height) {
+            belowLayer = MipMap.createCompatibleImage(width, height, Transparency.OPAQUE);
+            aboveLayer = MipMap.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        }
+
+        Graphics2D below = belowLayer.createGraphics();
+        Graphics2D above = aboveLayer.createGraphics();
+        below.setColor(getBackground());
+        below.fillRect(0, 0, width, height);
+        above.setComposite(AlphaComposite.Clear);
+        above.fillRect(0, 0, width, height);
+        above.setComposite(AlphaComposite.SrcOver);
+        quality().apply(below);
+        quality().apply(above);
+        below.scale(deviceScale, deviceScale);
+        above.scale(deviceScale, deviceScale);
+        below.transform(view);
+        above.transform(view);
+
+        Rectangle region = toDocument(new Rectangle(0, 0, getWidth(), getHeight()));
+        paintPage(below);
+        drawRange(below, region, 0, layersFrom - 1);
+        drawRange(above, region, layersTo + 1, drawableObjects.size() - 1);
+        below.dispose();
+        above.dispose();
+        layersValid = true;
+    }
+
+    void setOverlayVisible(boolean visible) {
+        Instrumentation.enabled = visible;
+        if (visible) {
+            Instrumentation.reset();
+            overlayTimer.start();
+        } else {
+            overlayTimer.stop();
+        }
+        repaint();
+    }
+
+    private void paintPage(Graphics2D g2d) {
+        g2d.setColor(Color.WHITE);
+        g2d.fill(page);
+    }
+
+    // Draws the drawables in the z-range [from, to] that intersect the document region, bottom to top.
+    // A sparse view sorts the index hits by z; a dense one just walks the range.
+    private void drawRange(Graphics2D g2d, Rectangle region, int from, int to) {
+        if (from > to) return;
+        visible.clear();
+        index.query(region, visible);
+        if (dragOrigins != null) {
+            // The index still has the dragged drawables where the drag started.
+            visible.removeIf(dragOrigins::containsKey);
+            for (Drawable drawable : dragOrigins.keySet()) {
+                if (drawable.getBounds().intersects(region)) visible.add(drawable);
+            }
+        }
+        if (visible.size() * 4L > to - from + 1) {
+            Iterator<Drawable> drawables = drawableObjects.iteratorFrom(from);
+            for (int zIndex = from; zIndex <= to; zIndex++) {
+                Drawable drawable = drawables.next();
+                if (drawable.getBounds().intersects(region)) drawDetailed(drawable, g2d);
+            }
+            return;
+        }
+
+        long[] order = new long[visible.size()];
+        int count = 0;
+        for (int i = 0; i < visible.size(); i++) {
+            int zIndex = drawableObjects.indexOf(visible.get(i));
+            if (zIndex >= from && zIndex <= to) order[count++] = (long) zIndex << 32 | i;
+        }
+        Arrays.sort(order, 0, count);
+        for (int i = 0; i < count; i++) {
+            drawDetailed(visible.get((int) order[i]), g2d);
+        }
+    }
+
+    private void drawDetailed(Drawable drawable, Graphics2D g2d) {
+        Rectangle bounds = drawable.getBounds();
+        if (Math.max(bounds.width, bounds.height) * zoom < PROXY_PIXELS) {
+            g2d.setColor(drawable.proxyColor());
+            g2d.fill(bounds);
+        } else {
+            draw(drawable, g2d);
+        }
+    }
+
+    private void draw(Drawable drawable, Graphics2D g2d) {
+        if (!timingDraws) {
+            drawable.Draw(g2d);
+            return;
+        }
+        Instrumentation.DrawEvent event = new Instrumentation.DrawEvent();
+        long start = System.nanoTime();
+        event.begin();
+        drawable.Draw(g2d);
+        Instrumentation.drawFinished(drawable, start, event);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Instrumentation.FrameEvent frameEvent = Instrumentation.timingFrames() ? new Instrumentation.FrameEvent() : null;
+        long frameStart = System.nanoTime();
+        if (frameEvent != null) frameEvent.begin();
+        timingDraws = Instrumentation.timingDraws();
+
+        super.paintComponent(g);
+        Graphics2D g2d = (Graphics2D) g;
+        AffineTransform base = g2d.getTransform();
+        Rectangle clip = g2d.getClipBounds();
+        Rectangle region = toDocument(clip != null ? clip : new Rectangle(0, 0, getWidth(), getHeight()));
+        quality().apply(g2d);
+
+        // Once the refined view covers everything only the decorations are painted over it.
+        if (!refiner.isComplete()) {
+            if (!selection.isEmpty() && getWidth() > 0 && getHeight() > 0) {
+                updateLayers(base.getScaleX());
+                g2d.drawImage(belowLayer, 0, 0, getWidth(), getHeight(), null);
+                g2d.transform(view);
+                drawRange(g2d, region, layersFrom, layersTo);
+                g2d.setTransform(base);
+                g2d.drawImage(aboveLayer, 0, 0, getWidth(), getHeight(), null);
+            } else {
+                g2d.transform(view);
+                paintPage(g2d);
+                drawRange(g2d, region, 0, drawableObjects.size() - 1);
+                g2d.setTransform(base);
+            }
+        }
+        refiner.paint(g2d, base);
+
+        if (!selection.isEmpty()) {
+            updateHandles();
+            g2d.setColor(Color.BLUE);
+            g2d.fill(resizeHandle);
+            g2d.setColor(Color.ORANGE);
+            g2d.fill(rotateHandle);
+            if (selection.size() > 1) {
+                g2d.setColor(Color.PINK);
+                for (Drawable drawable : selection) {
+                    Rectangle member = toScreen(drawable.getBounds(), screenMember);
+                    g2d.drawRect(member.x - 2, member.y - 2, member.width + 4, member.height + 4);
+                }
+            }
+            Rectangle bounds = toScreen(getSelectionBounds(), screenBounds);
+            g2d.setColor(Color.RED);
+            g2d.drawRect(bounds.x - 5, bounds.y - 5, bounds.width + 10, bounds.height + 10);
+
+            g2d.setColor(Color.GRAY);
+            int cx = bounds.x + bounds.width / 2;
+            int cy = bounds.y + bounds.height / 2;
+            g2d.fillOval(cx - 6, cy - 6, 12, 12);
+        }
+
+        if (marquee != null) {
+            Rectangle outline = toScreen(marquee, screenBounds);
+            g2d.setColor(Color.BLUE);
+            g2d.drawRect(outline.x, outline.y, outline.width, outline.height);
+        }
+
+        if (frameEvent != null) {
+            frameEvent.end();
+            if (frameEvent.shouldCommit()) {
+                frameEvent.drawables = drawableObjects.size();
+                frameEvent.clipArea = clip == null ? (long) getWidth() * getHeight() : (long) clip.width * clip.height;
+                frameEvent.commit();
+            }
+        }
+        if (Instrumentation.enabled) {
+            Instrumentation.frameFinished(frameStart);
+            paintOverlay(g2d);
+        }
+    }
+
+    private void paintOverlay(Graphics2D g2d) {
+        Rectangle overlay = OVERLAY_BOUNDS;
+        g2d.setColor(new Color(0, 0, 0, 170));
+        g2d.fillRect(overlay.x, overlay.y, overlay.width, overlay.height);
+        g2d.setColor(Color.WHITE);
+        g2d.setFont(g2d.getFont().deriveFont(11f));
+
+        int line = overlay.y + 14;
+        g2d.drawString(String.format("%.1f fps   frame p50 %.2f / p99 %.2f ms", Instrumentation.framesPerSecond,
+                Instrumentation.frameTimes.percentile(50) / 1e6, Instrumentation.frameTimes.percentile(99) / 1e6), 6, line);
+        line += 14;
+        g2d.drawString(String.format("input->paint p99 %.2f ms   pick p99 %.3f ms",
+                Instrumentation.inputToPaint.percentile(99) / 1e6, Instrumentation.pickTimes.percentile(99) / 1e6), 6, line);
+        line += 14;
+        g2d.drawString(String.format("decode p99 %.1f ms   objects %d",
+                Instrumentation.decodeTimes.percentile(99) / 1e6, drawableObjects.size()), 6, line);
+        line += 16;
+        g2d.drawString("Slowest drawables (last frame):", 6, line);
+        for (int i = 0; i < Instrumentation.SLOWEST_TRACKED && Instrumentation.slowestDrawables[i] != null; i++) {
+            line += 13;
+            Drawable drawable = Instrumentation.slowestDrawables[i];
+            Rectangle bounds = drawable.getBounds();
+            g2d.drawString(String.format("%.3f ms  %s @ %d,%d", Instrumentation.slowestNanos[i] / 1e6,
+                    drawable.getClass().getSimpleName(), bounds.x, bounds.y), 12, line);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package poster;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.awt.geom.Point2D;
+import java.util.concurrent.atomic.AtomicLong;
+
+abstract class Drawable {
+    private static final AtomicLong NEXT_ID = new AtomicLong(1);
+
+    // Identifies the drawable in the autosave journal; not persisted in poster files. Copies keep the id.
+    final long id;
+    AffineTransform transform;
+    Listener listener;
+
+    private Shape transformedShape;
+    private Rectangle bounds;
+    private final Point2D.Double center = new Point2D.Double();
+    private AffineTransform inverse;
+    private boolean inverseValid;
+
+    Drawable() {
+        id = NEXT_ID.getAndIncrement();
+    }
+
+    Drawable(Drawable original) {
+        id = original.id;
+        transform = new AffineTransform(original.transform);
+    }
+
+    // A copy for scene snapshots. Shapes, colors and mipmaps are shared since they are never modified;
+    // the caches are filled here so readers on other threads never write them.
+    abstract Drawable copy();
+
+    interface Listener {
+        void drawableChanged(Drawable drawable, Rectangle dirtyRegion);
+    }
+
+    // A saved transform; for groups it also holds the saved transforms of the children.
+    static final class TransformState {
+        final AffineTransform transform;
+        final TransformState[] children;
+
+        TransformState(AffineTransform transform, TransformState[] children) {
+            this.transform = new AffineTransform(transform);
+            this.children = children;
+        }
+    }
+
+    public abstract void Draw(Graphics2D g2d);
+
+    abstract Shape getLocalShape();
+
+    // Flat color used in place of Draw when the drawable is only a few pixels on screen.
+    Color proxyColor() {
+        return Color.LIGHT_GRAY;
+    }
+
+    Shape getTransformedShape() {
+        if (transformedShape == null) {
+            transformedShape = transform.createTransformedShape(getLocalShape());
+        }
+        return transformedShape;
+    }
+
+    public boolean contains(Point p) {
+        return getBounds().contains(p) && getTransformedShape().contains(p);
+    }
+
+    // The returned rectangle and center are cached and must not be modified by callers.
+    public Rectangle getBounds() {
+        if (bounds == null) {
+            bounds = getTransformedShape().getBounds();
+            center.setLocation(bounds.x + bounds.width / 2.0, bounds.y + bounds.height / 2.0);
+        }
+        return bounds;
+    }
+
+    public Point2D getCenter() {
+        getBounds();
+        return center;
+    }
+
+    // Cached like the bounds and must not be modified by callers; null if the transform is not invertible.
+    AffineTransform getInverseTransform() {
+        if (!inverseValid) {
+            try {
+                inverse = transform.createInverse();
+            } catch (NoninvertibleTransformException e) {
+                inverse = null;
+            }
+            inverseValid = true;
+        }
+        return inverse;
+    }
+
+    public void translate(double dx, double dy) {
+        transformBy(AffineTransform.getTranslateInstance(dx, dy));
+    }
+
+    public void scale(double sx, double sy, double anchorX, double anchorY) {
+        AffineTransform scaleTransform = new AffineTransform();
+        scaleTransform.translate(anchorX, anchorY);
+        scaleTransform.scale(sx, sy);
+        scaleTransform.translate(-anchorX, -anchorY);
+        transformBy(scaleTransform);
+    }
+
+    public void rotate(double theta, double anchorX, double anchorY) {
+        transformBy(AffineTransform.getRotateInstance(theta, anchorX, anchorY));
+    }
+
+    void transformBy(AffineTransform delta) {
+        Rectangle oldBounds = getBounds();
+        transform.preConcatenate(delta);
+        transformChanged(oldBounds);
+    }
+
+    TransformState saveTransform() {
+        return new TransformState(transform, null);
+    }
+
+    // Sets the transform to delta applied to a saved state, so repeated updates never accumulate drift.
+    void restoreTransform(TransformState state, AffineTransform delta) {
+        Rectangle oldBounds = getBounds();
+        transform.setTransform(delta);
+        transform.concatenate(state.transform);
+        transformChanged(oldBounds);
+    }
+
+    // For changes that leave the geometry alone, such as a new fill color.
+    void contentChanged() {
+        if (listener != null) {
+            listener.drawableChanged(this, getBounds());
+        }
+    }
+
+    void transformChanged(Rectangle oldBounds) {
+        transformedShape = null;
+        bounds = null;
+        inverseValid = false;
+        if (listener != null) {
+            listener.drawableChanged(this, oldBounds.union(getBounds()));
+        }
+    }
+}
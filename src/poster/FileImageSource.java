@@ -0,0 +1,40 @@
+package poster;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+final class FileImageSource implements ImageSource {
+    final File file;
+
+    FileImageSource(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public ImageInputStream openStream() throws IOException {
+        return ImageIO.createImageInputStream(file);
+    }
+
+    @Override
+    public byte[] readAllBytes() throws IOException {
+        return Files.readAllBytes(file.toPath());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof FileImageSource && ((FileImageSource) o).file.equals(file);
+    }
+
+    @Override
+    public int hashCode() {
+        return file.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+}
@@ -0,0 +1,100 @@
+package poster;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.List;
+
+class GroupDrawable extends Drawable {
+    final List<Drawable> children;
+    private Path2D outline;
+
+    public GroupDrawable(List<? extends Drawable> children) {
+        this.children = new ArrayList<>(children);
+        this.transform = new AffineTransform();
+        for (Drawable child : this.children) {
+            child.listener = null;
+        }
+    }
+
+    GroupDrawable(GroupDrawable original) {
+        super(original);
+        children = new ArrayList<>(original.children.size());
+        for (Drawable child : original.children) {
+            children.add(child.copy());
+        }
+    }
+
+    @Override
+    GroupDrawable copy() {
+        GroupDrawable copy = new GroupDrawable(this);
+        copy.getBounds();
+        return copy;
+    }
+
+    @Override
+    public void Draw(Graphics2D g2d) {
+        for (Drawable child : children) {
+            child.Draw(g2d);
+        }
+    }
+
+    @Override
+    Shape getLocalShape() {
+        return getTransformedShape();
+    }
+
+    @Override
+    Shape getTransformedShape() {
+        if (outline == null) {
+            Path2D.Double path = new Path2D.Double();
+            for (Drawable child : children) {
+                path.append(child.getTransformedShape(), false);
+            }
+            outline = path;
+        }
+        return outline;
+    }
+
+    @Override
+    public boolean contains(Point p) {
+        if (!getBounds().contains(p)) return false;
+        for (Drawable child : children) {
+            if (child.contains(p)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    void transformBy(AffineTransform delta) {
+        Rectangle oldBounds = getBounds();
+        for (Drawable child : children) {
+            child.transformBy(delta);
+        }
+        transform.preConcatenate(delta);
+        outline = null;
+        transformChanged(oldBounds);
+    }
+
+    @Override
+    TransformState saveTransform() {
+        TransformState[] saved = new TransformState[children.size()];
+        for (int i = 0; i < saved.length; i++) {
+            saved[i] = children.get(i).saveTransform();
+        }
+        return new TransformState(transform, saved);
+    }
+
+    @Override
+    void restoreTransform(TransformState state, AffineTransform delta) {
+        Rectangle oldBounds = getBounds();
+        for (int i = 0; i < state.children.length; i++) {
+            children.get(i).restoreTransform(state.children[i], delta);
+        }
+        transform.setTransform(delta);
+        transform.concatenate(state.transform);
+        outline = null;
+        transformChanged(oldBounds);
+    }
+}
@@ -0,0 +1,50 @@
+package poster;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+// One bit per pixel of a mip level: set where the pixel is opaque enough to be clicked. Opaque images
+// get a mask without bits that hits everywhere.
+final class HitMask {
+    static final int MIN_ALPHA = 16;
+
+    final int level;
+    final int width;
+    final int height;
+    private final long[] bits;
+
+    private HitMask(int level, int width, int height, long[] bits) {
+        this.level = level;
+        this.width = width;
+        this.height = height;
+        this.bits = bits;
+    }
+
+    static HitMask of(BufferedImage image, int level) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if (image.getTransparency() == Transparency.OPAQUE) return new HitMask(level, width, height, null);
+
+        long[] bits = new long[(int) (((long) width * height + 63) >>> 6)];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            long bit = (long) y * width;
+            for (int x = 0; x < width; x++, bit++) {
+                if (row[x] >>> 24 >= MIN_ALPHA) bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+        return new HitMask(level, width, height, bits);
+    }
+
+    // Takes mask pixel coordinates, which must be inside the mask.
+    boolean get(int x, int y) {
+        if (bits == null) return true;
+        long bit = (long) y * width + x;
+        return (bits[(int) (bit >>> 6)] & 1L << bit) != 0;
+    }
+
+    long bytes() {
+        return bits == null ? 0 : 8L * bits.length;
+    }
+}
@@ -0,0 +1,107 @@
+package poster;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+// Re-renders the visible region at RenderQuality.HIGH once the canvas has been idle for a moment. Strips
+// are rendered off the EDT from a scene snapshot and shown as they finish; any input or change cancels
+// the pass and drops what was rendered so far.
+class IdleRefiner {
+    static final int IDLE_MILLIS = Integer.getInteger("poster.refineIdleMillis", 250);
+
+    final CanvasPanel canvas;
+    final Timer idleTimer;
+    private SwingWorker<Void, Integer> worker;
+    private BufferedImage[] strips;
+    private int finished;
+    private int width;
+    private int height;
+    private double deviceScale = 1;
+
+    IdleRefiner(CanvasPanel canvas) {
+        this.canvas = canvas;
+        idleTimer = new Timer(IDLE_MILLIS, e -> idle());
+        idleTimer.setRepeats(false);
+    }
+
+    // Called for every input event and every change to what the canvas shows.
+    void invalidate() {
+        if (worker != null) {
+            worker.cancel(false);
+            worker = null;
+        }
+        if (strips != null) {
+            strips = null;
+            canvas.repaint();
+        }
+        if (canvas.isShowing()) idleTimer.restart();
+    }
+
+    private void idle() {
+        if (canvas.interacting()) {
+            idleTimer.restart();
+            return;
+        }
+        canvas.endInteraction();
+        if (canvas.getWidth() <= 0 || canvas.getHeight() <= 0) return;
+
+        PosterExporter exporter = new PosterExporter(canvas.snapshot(), new Rectangle2D.Double(-canvas.panX / canvas.zoom,
+                -canvas.panY / canvas.zoom, canvas.getWidth() / canvas.zoom, canvas.getHeight() / canvas.zoom),
+                canvas.zoom * deviceScale);
+        exporter.sheet = canvas.getPageBounds();
+        exporter.pasteboard = canvas.getBackground();
+        BufferedImage[] rendered = new BufferedImage[exporter.stripCount()];
+        BufferedImage[] shown = new BufferedImage[rendered.length];
+        strips = shown;
+        finished = 0;
+        width = canvas.getWidth();
+        height = canvas.getHeight();
+
+        worker = new SwingWorker<>() {
+            @Override
+            protected Void doInBackground() {
+                for (int strip = 0; strip < rendered.length && !isCancelled(); strip++) {
+                    rendered[strip] = exporter.renderStrip(strip);
+                    publish(strip);
+                }
+                return null;
+            }
+
+            @Override
+            protected void process(List<Integer> done) {
+                if (strips != shown) return;
+                finished += done.size();
+                for (int strip : done) {
+                    shown[strip] = rendered[strip];
+                    int y = (int) Math.floor(strip * PosterExporter.STRIP_HEIGHT / deviceScale);
+                    canvas.repaint(0, y, width, (int) Math.ceil(PosterExporter.STRIP_HEIGHT / deviceScale) + 1);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    boolean isComplete() {
+        return strips != null && finished == strips.length && canvas.getWidth() == width && canvas.getHeight() == height;
+    }
+
+    // Draws the strips finished so far over the frame painted under the given base transform.
+    void paint(Graphics2D g2d, AffineTransform base) {
+        deviceScale = base.getScaleX();
+        if (strips == null || canvas.getWidth() != width || canvas.getHeight() != height) return;
+        AffineTransform stripTransform = AffineTransform.getScaleInstance(1 / deviceScale, 1 / deviceScale);
+        for (int strip = 0; strip < strips.length; strip++) {
+            BufferedImage image = strips[strip];
+            if (image == null) continue;
+            g2d.setTransform(base);
+            stripTransform.setToScale(1 / deviceScale, 1 / deviceScale);
+            stripTransform.translate(0, strip * PosterExporter.STRIP_HEIGHT);
+            g2d.drawImage(image, stripTransform, null);
+        }
+        g2d.setTransform(base);
+    }
+}
@@ -0,0 +1,56 @@
+package poster;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+
+class ImageDrawable extends Drawable{
+    MipMap mipMap;
+    Rectangle imageBounds;
+    // Hit tests run on the EDT only, so they share one point per drawable instead of allocating.
+    private final Point2D.Double hitPoint = new Point2D.Double();
+
+    public ImageDrawable(Image image, double x, double y) {
+        this(new MipMap(image), x, y);
+    }
+
+    public ImageDrawable(MipMap mipMap, double x, double y) {
+        this.mipMap = mipMap;
+        this.imageBounds = new Rectangle(0, 0, mipMap.width, mipMap.height);
+        this.transform = AffineTransform.getTranslateInstance(x, y);
+    }
+
+    ImageDrawable(ImageDrawable original) {
+        super(original);
+        this.mipMap = original.mipMap;
+        this.imageBounds = original.imageBounds;
+    }
+
+    @Override
+    ImageDrawable copy() {
+        ImageDrawable copy = new ImageDrawable(this);
+        copy.getBounds();
+        return copy;
+    }
+
+    @Override
+    public void Draw(Graphics2D g2d) {
+        mipMap.draw(g2d, transform);
+    }
+
+    // Transparent pixels don't count, so clicks go through cutouts to whatever is visible underneath.
+    @Override
+    public boolean contains(Point p) {
+        if (!getBounds().contains(p)) return false;
+        AffineTransform inverse = getInverseTransform();
+        if (inverse == null) return false;
+        hitPoint.setLocation(p.x + 0.5, p.y + 0.5);
+        inverse.transform(hitPoint, hitPoint);
+        return mipMap.hits(hitPoint.x, hitPoint.y);
+    }
+
+    @Override
+    Shape getLocalShape() {
+        return imageBounds;
+    }
+}
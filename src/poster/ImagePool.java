@@ -0,0 +1,163 @@
+package poster;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Shares one MipMap per image source. Entries are held weakly, so a MipMap that no drawable, undo entry
+// or batch job refers to any more is collected with its levels, and its entry is dropped the next time
+// the pool is used.
+class ImagePool {
+    static final ImagePool SHARED = new ImagePool(Long.getLong("poster.imageBudgetMB", 512) << 20);
+
+    final long budgetBytes;
+    volatile Runnable levelLoadedListener;
+
+    private final Map<ImageSource, Entry> entries = new HashMap<>();
+    private final ReferenceQueue<MipMap> collected = new ReferenceQueue<>();
+    // Evictable entries in least recently used order.
+    private final LinkedHashMap<Entry, Boolean> recentlyUsed = new LinkedHashMap<>(16, 0.75f, true);
+    private final ExecutorService loader = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-pool-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final class Entry extends WeakReference<MipMap> {
+        final ImageSource source;
+
+        Entry(MipMap mipMap, ReferenceQueue<MipMap> queue) {
+            super(mipMap, queue);
+            source = mipMap.source;
+        }
+    }
+
+    ImagePool(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    MipMap get(ImageSource source) throws IOException {
+        synchronized (this) {
+            MipMap existing = existing(source);
+            if (existing != null) return existing;
+        }
+
+        BufferedImage decoded = source.read(1);
+        if (decoded == null) throw new IOException("Cannot decode " + source);
+        MipMap created = add(new MipMap(source, this, decoded));
+        trim(created);
+        return created;
+    }
+
+    // Decodes only the proxy level; finer levels are loaded when a draw needs them.
+    MipMap getProxy(ImageSource source) throws IOException {
+        synchronized (this) {
+            MipMap existing = existing(source);
+            if (existing != null) return existing;
+        }
+        Dimension size = source.size();
+        MipMap created = add(new MipMap(source, this, size.width, size.height));
+        created.level(created.proxyLevel);
+        return created;
+    }
+
+    MipMap get(ImageSource source, int width, int height) {
+        synchronized (this) {
+            MipMap existing = existing(source);
+            if (existing != null) return existing;
+        }
+        return add(new MipMap(source, this, width, height));
+    }
+
+    private MipMap existing(ImageSource source) {
+        expunge();
+        Entry entry = entries.get(source);
+        MipMap existing = entry == null ? null : entry.get();
+        if (existing != null) recentlyUsed.get(entry);
+        return existing;
+    }
+
+    // Returns the MipMap already pooled for the same source instead, if another thread got there first.
+    private synchronized MipMap add(MipMap created) {
+        MipMap existing = existing(created.source);
+        if (existing != null) return existing;
+        Entry entry = new Entry(created, collected);
+        entries.put(created.source, entry);
+        if (created.isEvictable()) recentlyUsed.put(entry, Boolean.TRUE);
+        return created;
+    }
+
+    private Entry entryOf(MipMap mipMap) {
+        Entry entry = entries.get(mipMap.source);
+        return entry != null && entry.get() == mipMap ? entry : null;
+    }
+
+    private void expunge() {
+        for (Reference<? extends MipMap> reference; (reference = collected.poll()) != null; ) {
+            Entry entry = (Entry) reference;
+            entries.remove(entry.source, entry);
+            recentlyUsed.remove(entry);
+        }
+    }
+
+    synchronized void touch(MipMap mipMap) {
+        Entry entry = entryOf(mipMap);
+        if (entry != null) recentlyUsed.get(entry);
+    }
+
+    void levelLoaded(MipMap mipMap) {
+        synchronized (this) {
+            expunge();
+            Entry entry = entryOf(mipMap);
+            if (entry != null) recentlyUsed.put(entry, Boolean.TRUE);
+        }
+        trim(mipMap);
+    }
+
+    void loadAsync(Runnable load) {
+        loader.execute(() -> {
+            load.run();
+            Runnable listener = levelLoadedListener;
+            if (listener != null) listener.run();
+        });
+    }
+
+    synchronized long residentHighResBytes() {
+        long total = 0;
+        for (Entry entry : recentlyUsed.keySet()) {
+            MipMap mipMap = entry.get();
+            if (mipMap != null) total += mipMap.highResBytes();
+        }
+        return total;
+    }
+
+    private void trim(MipMap keep) {
+        List<MipMap> victims = new ArrayList<>();
+        synchronized (this) {
+            long total = residentHighResBytes();
+            for (Entry entry : recentlyUsed.keySet()) {
+                if (total <= budgetBytes) break;
+                MipMap mipMap = entry.get();
+                if (mipMap == null) continue;
+                long bytes = mipMap.highResBytes();
+                if (mipMap != keep && bytes > 0) {
+                    victims.add(mipMap);
+                    total -= bytes;
+                }
+            }
+        }
+        for (MipMap victim : victims) {
+            victim.evictHighRes();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package poster;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+interface ImageSource {
+    ImageInputStream openStream() throws IOException;
+
+    // The encoded bytes, as stored in a poster document.
+    byte[] readAllBytes() throws IOException;
+
+    static ImageSource of(File file) {
+        return new FileImageSource(file.getAbsoluteFile());
+    }
+
+    // Reads the image header only.
+    default Dimension size() throws IOException {
+        try (ImageInputStream in = openStream()) {
+            if (in == null) throw new IOException("Cannot open " + this);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) throw new IOException("No image reader for " + this);
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    default BufferedImage read(int subsampling) throws IOException {
+        try (ImageInputStream in = openStream()) {
+            if (in == null) throw new IOException("Cannot open " + this);
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) throw new IOException("No image reader for " + this);
+
+            ImageReader reader = readers.next();
+            Instrumentation.DecodeEvent event = new Instrumentation.DecodeEvent();
+            long start = System.nanoTime();
+            event.begin();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                BufferedImage image = reader.read(0, param);
+                Instrumentation.decodeFinished(start, this, subsampling, image.getWidth(), image.getHeight(), event);
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
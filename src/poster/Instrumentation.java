@@ -0,0 +1,182 @@
+package poster;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.util.Arrays;
+
+class Instrumentation {
+    static final int SLOWEST_TRACKED = 5;
+
+    static volatile boolean enabled = Boolean.getBoolean("poster.instrumentation");
+
+    static final LatencyHistogram frameTimes = new LatencyHistogram();
+    static final LatencyHistogram inputToPaint = new LatencyHistogram();
+    static final LatencyHistogram pickTimes = new LatencyHistogram();
+    static final LatencyHistogram decodeTimes = new LatencyHistogram();
+
+    private static final EventType FRAME_EVENT_TYPE = EventType.getEventType(FrameEvent.class);
+    private static final EventType DRAW_EVENT_TYPE = EventType.getEventType(DrawEvent.class);
+    private static final EventType PICK_EVENT_TYPE = EventType.getEventType(PickEvent.class);
+
+    static double framesPerSecond;
+    private static long fpsWindowStart;
+    private static int fpsWindowFrames;
+    private static long pendingInput;
+
+    static final Drawable[] slowestDrawables = new Drawable[SLOWEST_TRACKED];
+    static final long[] slowestNanos = new long[SLOWEST_TRACKED];
+    private static final Drawable[] frameSlowest = new Drawable[SLOWEST_TRACKED];
+    private static final long[] frameSlowestNanos = new long[SLOWEST_TRACKED];
+
+    private Instrumentation() {
+    }
+
+    @Name("poster.Frame")
+    @Label("Canvas Frame")
+    @Category("Poster")
+    static class FrameEvent extends Event {
+        @Label("Drawables")
+        int drawables;
+        @Label("Clip Area")
+        long clipArea;
+    }
+
+    @Name("poster.Draw")
+    @Label("Drawable Draw")
+    @Category("Poster")
+    static class DrawEvent extends Event {
+        @Label("Type")
+        String type;
+        @Label("Bounds")
+        String bounds;
+    }
+
+    @Name("poster.Pick")
+    @Label("Hit Test")
+    @Category("Poster")
+    static class PickEvent extends Event {
+        @Label("Candidates")
+        int candidates;
+        @Label("Hit")
+        boolean hit;
+    }
+
+    @Name("poster.Decode")
+    @Label("Image Decode")
+    @Category("Poster")
+    static class DecodeEvent extends Event {
+        @Label("Source")
+        String source;
+        @Label("Subsampling")
+        int subsampling;
+        @Label("Width")
+        int width;
+        @Label("Height")
+        int height;
+    }
+
+    // The canvas creates its events only when one of these is true, so that neither the overlay nor a
+    // recording being off costs an allocation per frame, drawable or hit test.
+    static boolean timingFrames() {
+        return FRAME_EVENT_TYPE.isEnabled();
+    }
+
+    static boolean timingDraws() {
+        return enabled || DRAW_EVENT_TYPE.isEnabled();
+    }
+
+    static boolean timingPicks() {
+        return enabled || PICK_EVENT_TYPE.isEnabled();
+    }
+
+    static void inputReceived() {
+        if (enabled && pendingInput == 0) {
+            pendingInput = System.nanoTime();
+        }
+    }
+
+    static void drawFinished(Drawable drawable, long start, DrawEvent event) {
+        long nanos = System.nanoTime() - start;
+        event.end();
+        if (event.shouldCommit()) {
+            event.type = drawable.getClass().getSimpleName();
+            event.bounds = drawable.getBounds().toString();
+            event.commit();
+        }
+        if (!enabled) return;
+
+        for (int i = 0; i < SLOWEST_TRACKED; i++) {
+            if (frameSlowest[i] == null || nanos > frameSlowestNanos[i]) {
+                System.arraycopy(frameSlowest, i, frameSlowest, i + 1, SLOWEST_TRACKED - i - 1);
+                System.arraycopy(frameSlowestNanos, i, frameSlowestNanos, i + 1, SLOWEST_TRACKED - i - 1);
+                frameSlowest[i] = drawable;
+                frameSlowestNanos[i] = nanos;
+                return;
+            }
+        }
+    }
+
+    static void frameFinished(long start) {
+        long now = System.nanoTime();
+        frameTimes.record(now - start);
+        if (pendingInput != 0) {
+            inputToPaint.record(now - pendingInput);
+            pendingInput = 0;
+        }
+
+        if (frameSlowest[0] != null) {
+            System.arraycopy(frameSlowest, 0, slowestDrawables, 0, SLOWEST_TRACKED);
+            System.arraycopy(frameSlowestNanos, 0, slowestNanos, 0, SLOWEST_TRACKED);
+            Arrays.fill(frameSlowest, null);
+            Arrays.fill(frameSlowestNanos, 0);
+        }
+
+        fpsWindowFrames++;
+        if (fpsWindowStart == 0) {
+            fpsWindowStart = now;
+        } else if (now - fpsWindowStart >= 1_000_000_000L) {
+            framesPerSecond = fpsWindowFrames * 1e9 / (now - fpsWindowStart);
+            fpsWindowStart = now;
+            fpsWindowFrames = 0;
+        }
+    }
+
+    static void pickFinished(long start, int candidates, boolean hit, PickEvent event) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.candidates = candidates;
+            event.hit = hit;
+            event.commit();
+        }
+        if (enabled) pickTimes.record(System.nanoTime() - start);
+    }
+
+    static void decodeFinished(long start, Object source, int subsampling, int width, int height, DecodeEvent event) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = String.valueOf(source);
+            event.subsampling = subsampling;
+            event.width = width;
+            event.height = height;
+            event.commit();
+        }
+        if (enabled) decodeTimes.record(System.nanoTime() - start);
+    }
+
+    static void reset() {
+        frameTimes.reset();
+        inputToPaint.reset();
+        pickTimes.reset();
+        decodeTimes.reset();
+        Arrays.fill(slowestDrawables, null);
+        Arrays.fill(slowestNanos, 0);
+        framesPerSecond = 0;
+        fpsWindowStart = 0;
+        fpsWindowFrames = 0;
+        pendingInput = 0;
+    }
+}
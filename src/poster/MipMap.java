@@ -0,0 +1,234 @@
+package poster;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+class MipMap {
+    private static final int MIN_LEVEL_SIZE = 32;
+    static final int PROXY_SIZE = 256;
+    // Hit masks are built from the finest level no larger than this.
+    static final int HIT_MASK_SIZE = Integer.getInteger("poster.hitMaskSize", 1024);
+
+    final ImageSource source;
+    final ImagePool pool;
+    final int width;
+    final int height;
+    final int proxyLevel;
+    private final AtomicReferenceArray<BufferedImage> levels;
+    private final AtomicInteger pendingLevels = new AtomicInteger();
+    private final Object loadLock = new Object();
+    private volatile HitMask hitMask;
+
+    MipMap(Image source) {
+        this(null, null, toBufferedImage(source));
+    }
+
+    MipMap(ImageSource source, ImagePool pool, BufferedImage decoded) {
+        this(source, pool, decoded.getWidth(), decoded.getHeight());
+        levels.set(0, toCompatible(decoded));
+        for (int level = 1; level <= proxyLevel; level++) {
+            levels.set(level, halve(levels.get(level - 1)));
+        }
+    }
+
+    // Nothing is decoded until the first draw, which loads the proxy level.
+    MipMap(ImageSource source, ImagePool pool, int width, int height) {
+        this.source = source;
+        this.pool = pool;
+        this.width = width;
+        this.height = height;
+
+        int count = 1;
+        while (Math.max(width, height) >> count >= MIN_LEVEL_SIZE) {
+            count++;
+        }
+        int proxy = 0;
+        while (proxy + 1 < count && Math.max(width, height) >> proxy > PROXY_SIZE) {
+            proxy++;
+        }
+        proxyLevel = proxy;
+
+        levels = new AtomicReferenceArray<>(count);
+    }
+
+    private static BufferedImage toBufferedImage(Image image) {
+        if (image instanceof BufferedImage) return (BufferedImage) image;
+        BufferedImage buffered = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = buffered.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return buffered;
+    }
+
+    static BufferedImage createCompatibleImage(int width, int height, int transparency) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, transparency == Transparency.OPAQUE
+                    ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().createCompatibleImage(width, height, transparency);
+    }
+
+    private static BufferedImage toCompatible(BufferedImage source) {
+        BufferedImage compatible = createCompatibleImage(source.getWidth(), source.getHeight(), source.getTransparency());
+        Graphics2D g2d = compatible.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.drawImage(source, 0, 0, null);
+        g2d.dispose();
+        return compatible;
+    }
+
+    private static BufferedImage halve(BufferedImage larger) {
+        int w = Math.max(1, (larger.getWidth() + 1) / 2);
+        int h = Math.max(1, (larger.getHeight() + 1) / 2);
+        BufferedImage smaller = createCompatibleImage(w, h, larger.getTransparency());
+        Graphics2D g2d = smaller.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(larger, 0, 0, w, h, null);
+        g2d.dispose();
+        return smaller;
+    }
+
+    int levelCount() {
+        return levels.length();
+    }
+
+    int levelFor(double scale) {
+        int level = 0;
+        while (level + 1 < levels.length() && scale <= 0.5) {
+            scale *= 2;
+            level++;
+        }
+        return level;
+    }
+
+    boolean isEvictable() {
+        return source != null && proxyLevel > 0;
+    }
+
+    long highResBytes() {
+        long bytes = 0;
+        for (int level = 0; level < proxyLevel; level++) {
+            BufferedImage image = levels.get(level);
+            if (image != null) bytes += 4L * image.getWidth() * image.getHeight();
+        }
+        return bytes;
+    }
+
+    void evictHighRes() {
+        if (!isEvictable()) return;
+        for (int level = 0; level < proxyLevel; level++) {
+            levels.set(level, null);
+        }
+    }
+
+    BufferedImage level(int level) {
+        BufferedImage image = levels.get(level);
+        if (image != null) return image;
+
+        synchronized (loadLock) {
+            image = levels.get(level);
+            if (image != null) return image;
+            try {
+                if (level > proxyLevel) {
+                    image = halve(level(level - 1));
+                } else if (level == 0) {
+                    image = toCompatible(source.read(1));
+                } else {
+                    image = halve(toCompatible(source.read(1 << (level - 1))));
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            levels.set(level, image);
+        }
+        if (pool != null && level < proxyLevel) pool.levelLoaded(this);
+        return image;
+    }
+
+    private BufferedImage residentLevel(int level) {
+        for (int finer = level; finer >= 0; finer--) {
+            BufferedImage image = levels.get(finer);
+            if (image != null) return image;
+        }
+        return levels.get(proxyLevel);
+    }
+
+    private void requestLevel(int level) {
+        int bit = 1 << level;
+        if ((pendingLevels.getAndAccumulate(bit, (pending, b) -> pending | b) & bit) != 0) return;
+        pool.loadAsync(() -> {
+            try {
+                level(level);
+            } finally {
+                pendingLevels.getAndAccumulate(bit, (pending, b) -> pending & ~b);
+            }
+        });
+    }
+
+    // Takes image pixel coordinates. The mask comes from the finest resident level up to HIT_MASK_SIZE and
+    // is rebuilt once a finer one is loaded for drawing, so picking never decodes more than the proxy.
+    boolean hits(double x, double y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return false;
+        HitMask mask = hitMask();
+        return mask.get((int) (x * mask.width / width), (int) (y * mask.height / height));
+    }
+
+    private HitMask hitMask() {
+        int target = 0;
+        while (target < proxyLevel && Math.max(width, height) >> target > HIT_MASK_SIZE) {
+            target++;
+        }
+        HitMask mask = hitMask;
+        if (mask != null && mask.level == target) return mask;
+
+        int level = target;
+        while (level < proxyLevel && levels.get(level) == null) {
+            level++;
+        }
+        if (mask != null && mask.level <= level) return mask;
+        mask = HitMask.of(level(level), level);
+        hitMask = mask;
+        return mask;
+    }
+
+    static double scaleOf(AffineTransform device, AffineTransform transform) {
+        double m00 = device.getScaleX() * transform.getScaleX() + device.getShearX() * transform.getShearY();
+        double m10 = device.getShearY() * transform.getScaleX() + device.getScaleY() * transform.getShearY();
+        double m01 = device.getScaleX() * transform.getShearX() + device.getShearX() * transform.getScaleY();
+        double m11 = device.getShearY() * transform.getShearX() + device.getScaleY() * transform.getScaleY();
+        return Math.max(Math.hypot(m00, m10), Math.hypot(m01, m11));
+    }
+
+    void draw(Graphics2D g2d, AffineTransform transform) {
+        int wanted = levelFor(scaleOf(g2d.getTransform(), transform));
+        // Interactive frames draw one level coarser than the screen needs.
+        if (RenderQuality.of(g2d) == RenderQuality.FAST) wanted = Math.min(wanted + 1, levels.length() - 1);
+        BufferedImage image = levels.get(wanted);
+        if (image == null) {
+            if (wanted < proxyLevel && pool != null && SwingUtilities.isEventDispatchThread()) {
+                requestLevel(wanted);
+                image = residentLevel(wanted);
+                if (image == null) image = level(proxyLevel);
+            } else {
+                image = level(wanted);
+            }
+        }
+        if (pool != null) pool.touch(this);
+
+        if (image.getWidth() == width && image.getHeight() == height) {
+            g2d.drawImage(image, transform, null);
+            return;
+        }
+        AffineTransform levelTransform = new AffineTransform(transform);
+        levelTransform.scale((double) width / image.getWidth(), (double) height / image.getHeight());
+        g2d.drawImage(image, levelTransform, null);
+    }
+}
@@ -0,0 +1,177 @@
+package poster;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Immutable list on an implicit treap with path copying. plus, minus and with return a new list in
+// O(log n) that shares every untouched node with this one, so older versions stay valid and can be
+// read from any thread while newer ones are being made.
+final class PersistentList<E> extends AbstractList<E> {
+    private static final PersistentList<?> EMPTY = new PersistentList<>(null);
+
+    private static final class Node<E> {
+        final E value;
+        final int priority;
+        final Node<E> left;
+        final Node<E> right;
+        final int size;
+
+        Node(E value, int priority, Node<E> left, Node<E> right) {
+            this.value = value;
+            this.priority = priority;
+            this.left = left;
+            this.right = right;
+            size = 1 + size(left) + size(right);
+        }
+    }
+
+    private final Node<E> root;
+
+    private PersistentList(Node<E> root) {
+        this.root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> PersistentList<E> empty() {
+        return (PersistentList<E>) EMPTY;
+    }
+
+    // Builds the treap in O(n) by pushing each element on the right spine (a Cartesian tree build).
+    static <E> PersistentList<E> of(List<? extends E> values) {
+        int n = values.size();
+        if (n == 0) return empty();
+        int[] priority = new int[n];
+        int[] left = new int[n];
+        int[] right = new int[n];
+        int[] stack = new int[n];
+        int top = -1;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < n; i++) {
+            priority[i] = random.nextInt();
+            left[i] = -1;
+            right[i] = -1;
+            int last = -1;
+            while (top >= 0 && priority[stack[top]] < priority[i]) {
+                last = stack[top--];
+            }
+            left[i] = last;
+            if (top >= 0) right[stack[top]] = i;
+            stack[++top] = i;
+        }
+        return new PersistentList<>(build(stack[0], values, priority, left, right));
+    }
+
+    private static <E> Node<E> build(int i, List<? extends E> values, int[] priority, int[] left, int[] right) {
+        if (i < 0) return null;
+        return new Node<>(values.get(i), priority[i],
+                build(left[i], values, priority, left, right), build(right[i], values, priority, left, right));
+    }
+
+    private static int size(Node<?> node) {
+        return node == null ? 0 : node.size;
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public E get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+        Node<E> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.value;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    PersistentList<E> plus(int index, E value) {
+        if (index < 0 || index > size()) throw new IndexOutOfBoundsException(index);
+        Node<E> leaf = new Node<>(value, ThreadLocalRandom.current().nextInt(), null, null);
+        Node<E>[] parts = split(root, index);
+        return new PersistentList<>(merge(merge(parts[0], leaf), parts[1]));
+    }
+
+    PersistentList<E> minus(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+        Node<E>[] parts = split(root, index);
+        Node<E>[] rest = split(parts[1], 1);
+        return new PersistentList<>(merge(parts[0], rest[1]));
+    }
+
+    PersistentList<E> with(int index, E value) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(index);
+        return new PersistentList<>(with(root, index, value));
+    }
+
+    private static <E> Node<E> with(Node<E> node, int index, E value) {
+        int leftSize = size(node.left);
+        if (index < leftSize) return new Node<>(node.value, node.priority, with(node.left, index, value), node.right);
+        if (index == leftSize) return new Node<>(value, node.priority, node.left, node.right);
+        return new Node<>(node.value, node.priority, node.left, with(node.right, index - leftSize - 1, value));
+    }
+
+    // Returns the first index elements and the rest.
+    @SuppressWarnings("unchecked")
+    private static <E> Node<E>[] split(Node<E> node, int index) {
+        if (node == null) return (Node<E>[]) new Node<?>[2];
+        int leftSize = size(node.left);
+        if (index <= leftSize) {
+            Node<E>[] parts = split(node.left, index);
+            parts[1] = new Node<>(node.value, node.priority, parts[1], node.right);
+            return parts;
+        }
+        Node<E>[] parts = split(node.right, index - leftSize - 1);
+        parts[0] = new Node<>(node.value, node.priority, node.left, parts[0]);
+        return parts;
+    }
+
+    private static <E> Node<E> merge(Node<E> a, Node<E> b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) return new Node<>(a.value, a.priority, a.left, merge(a.right, b));
+        return new Node<>(b.value, b.priority, merge(a, b.left), b.right);
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            private final ArrayDeque<Node<E>> path = new ArrayDeque<>();
+
+            {
+                descend(root);
+            }
+
+            private void descend(Node<E> node) {
+                for (; node != null; node = node.left) {
+                    path.push(node);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !path.isEmpty();
+            }
+
+            @Override
+            public E next() {
+                if (path.isEmpty()) throw new NoSuchElementException();
+                Node<E> node = path.pop();
+                descend(node.right);
+                return node.value;
+            }
+        };
+    }
+}
@@ -0,0 +1,811 @@
+package poster;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import java.awt.*;
+import java.awt.event.*;
+import java.awt.geom.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PosterApp extends JFrame {
+    CanvasPanel canvasPanel;
+    ImagePanel imagePanel;
+    ShapePanel shapePanel;
+    ButtonPanel buttonPanel;
+    PosterDocument document;
+    Autosave autosave;
+
+    public PosterApp() {
+        setTitle("Poster app");
+        setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        setSize(900, 600);
+
+        setLayout(new BorderLayout());
+
+        JPanel leftPanel = new JPanel();
+        leftPanel.setLayout(new BorderLayout());
+        leftPanel.setPreferredSize(new Dimension(300, 600));
+
+        imagePanel = new ImagePanel(this);
+        shapePanel = new ShapePanel(this);
+
+        leftPanel.add(imagePanel, BorderLayout.CENTER);
+        leftPanel.add(shapePanel, BorderLayout.SOUTH);
+
+        JPanel rightPanel = new JPanel();
+        rightPanel.setLayout(new BorderLayout());
+        canvasPanel = new CanvasPanel(this);
+        buttonPanel = new ButtonPanel(this);
+        rightPanel.add(canvasPanel, BorderLayout.CENTER);
+        rightPanel.add(buttonPanel, BorderLayout.SOUTH);
+
+        add(leftPanel, BorderLayout.WEST);
+        add(rightPanel, BorderLayout.CENTER);
+
+        setJMenuBar(createMenuBar());
+
+        ImagePool.SHARED.levelLoadedListener = () -> SwingUtilities.invokeLater(() -> {
+            canvasPanel.invalidateLayers();
+            canvasPanel.repaint();
+        });
+
+        autosave = new Autosave(Autosave.DEFAULT_FILE, canvasPanel);
+        addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosing(WindowEvent e) {
+                autosave.close();
+            }
+        });
+
+        setVisible(true);
+        offerRecovery();
+    }
+
+    // A journal left behind means the last session did not exit cleanly.
+    void offerRecovery() {
+        if (!Autosave.hasJournal(autosave.file)) {
+            startAutosave();
+            return;
+        }
+        int answer = JOptionPane.showConfirmDialog(this, "The previous session ended unexpectedly. Recover its poster?",
+                "Recover poster", JOptionPane.YES_NO_OPTION);
+        if (answer != JOptionPane.YES_OPTION) {
+            startAutosave();
+            return;
+        }
+        // Modal, so nothing can be edited until the recovered scene replaces the canvas contents.
+        JProgressBar progress = new JProgressBar();
+        progress.setIndeterminate(true);
+        JDialog dialog = new JDialog(this, "Recovering poster", true);
+        dialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        dialog.add(progress);
+        dialog.pack();
+        dialog.setLocationRelativeTo(this);
+        new SwingWorker<Autosave.Recovered, Void>() {
+            @Override
+            protected Autosave.Recovered doInBackground() throws Exception {
+                return Autosave.recover(autosave.file, ImagePool.SHARED);
+            }
+
+            @Override
+            protected void done() {
+                dialog.dispose();
+                try {
+                    Autosave.Recovered recovered = get();
+                    canvasPanel.replaceDrawables(recovered.drawables, recovered.page);
+                    if (!recovered.missing.isEmpty()) {
+                        JOptionPane.showMessageDialog(PosterApp.this, "These images could not be found and were left out:\n"
+                                + String.join("\n", recovered.missing), "Recover poster", JOptionPane.WARNING_MESSAGE);
+                    }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    // Keep the journal for another try, out of the way of the one the new session starts.
+                    try {
+                        File kept = Autosave.setAside(autosave.file);
+                        JOptionPane.showMessageDialog(PosterApp.this, "Recovery failed: " + ex.getCause()
+                                + "\nThe journal was kept as " + kept);
+                    } catch (IOException moveEx) {
+                        moveEx.printStackTrace();
+                        JOptionPane.showMessageDialog(PosterApp.this, "Recovery failed: " + ex.getCause()
+                                + "\nAutosave stays off so that the journal " + autosave.file + " is not overwritten.");
+                        return;
+                    }
+                }
+                startAutosave();
+            }
+        }.execute();
+        dialog.setVisible(true);
+    }
+
+    String promptText(String title, String initial) {
+        JTextArea area = new JTextArea(initial, 4, 30);
+        int choice = JOptionPane.showConfirmDialog(this, new JScrollPane(area), title, JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+        return choice == JOptionPane.OK_OPTION ? area.getText() : null;
+    }
+
+    // Styles the selected text, or with no text selected, the text added next.
+    void promptTextStyle() {
+        TextDrawable selected = canvasPanel.selectedText();
+        Font font = selected != null ? selected.font : canvasPanel.textFont;
+        float wrapWidth = selected != null ? selected.wrapWidth : canvasPanel.textWrapWidth;
+
+        String[] families = GraphicsEnvironment.getLocalGraphicsEnvironment().getAvailableFontFamilyNames();
+        JComboBox<String> family = new JComboBox<>(families);
+        family.setSelectedItem(font.getFamily());
+        JCheckBox bold = new JCheckBox("Bold", font.isBold());
+        JCheckBox italic = new JCheckBox("Italic", font.isItalic());
+        JSpinner size = new JSpinner(new SpinnerNumberModel(font.getSize2D(), 1.0, 1000.0, 1.0));
+        JSpinner wrap = new JSpinner(new SpinnerNumberModel(wrapWidth, 0.0, 100000.0, 10.0));
+        JPanel form = new JPanel(new GridLayout(0, 2, 6, 6));
+        form.add(new JLabel("Font:"));
+        form.add(family);
+        form.add(bold);
+        form.add(italic);
+        form.add(new JLabel("Size:"));
+        form.add(size);
+        form.add(new JLabel("Wrap width (0 = none):"));
+        form.add(wrap);
+        int choice = JOptionPane.showConfirmDialog(this, form, selected != null ? "Text Style" : "Style for New Text",
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION) return;
+
+        int style = (bold.isSelected() ? Font.BOLD : Font.PLAIN) | (italic.isSelected() ? Font.ITALIC : Font.PLAIN);
+        Font styled = new Font((String) family.getSelectedItem(), style, 1).deriveFont(((Number) size.getValue()).floatValue());
+        float wrapTo = ((Number) wrap.getValue()).floatValue();
+        canvasPanel.textFont = styled;
+        canvasPanel.textWrapWidth = wrapTo;
+        if (selected != null) canvasPanel.styleText(selected, styled, wrapTo);
+    }
+
+    void promptPageSize() {
+        Rectangle page = canvasPanel.getPageBounds();
+        JSpinner width = new JSpinner(new SpinnerNumberModel(page.width, 1, 100000, 10));
+        JSpinner height = new JSpinner(new SpinnerNumberModel(page.height, 1, 100000, 10));
+        JPanel form = new JPanel(new GridLayout(0, 2, 6, 6));
+        form.add(new JLabel("Width:"));
+        form.add(width);
+        form.add(new JLabel("Height:"));
+        form.add(height);
+        int choice = JOptionPane.showConfirmDialog(this, form, "Page Size", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE);
+        if (choice != JOptionPane.OK_OPTION) return;
+        page.setSize(((Number) width.getValue()).intValue(), ((Number) height.getValue()).intValue());
+        canvasPanel.resizePage(page);
+    }
+
+    void startAutosave() {
+        canvasPanel.autosave = autosave;
+        autosave.start();
+    }
+
+    JMenuBar createMenuBar() {
+        JMenuBar menuBar = new JMenuBar();
+        JMenu fileMenu = new JMenu("File");
+        int shortcut = Toolkit.getDefaultToolkit().getMenuShortcutKeyMaskEx();
+        JMenuItem openItem = new JMenuItem("Open...");
+        openItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, shortcut));
+        openItem.addActionListener(e -> openPoster());
+        fileMenu.add(openItem);
+        JMenuItem saveItem = new JMenuItem("Save");
+        saveItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, shortcut));
+        saveItem.addActionListener(e -> savePoster(false));
+        fileMenu.add(saveItem);
+        JMenuItem saveAsItem = new JMenuItem("Save As...");
+        saveAsItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_S, shortcut | InputEvent.SHIFT_DOWN_MASK));
+        saveAsItem.addActionListener(e -> savePoster(true));
+        fileMenu.add(saveAsItem);
+        JMenuItem pageSizeItem = new JMenuItem("Page Size...");
+        pageSizeItem.addActionListener(e -> promptPageSize());
+        fileMenu.add(pageSizeItem);
+        fileMenu.addSeparator();
+        JMenuItem exportItem = new JMenuItem("Export...");
+        exportItem.addActionListener(e -> exportPoster());
+        fileMenu.add(exportItem);
+        menuBar.add(fileMenu);
+
+        JMenu editMenu = new JMenu("Edit");
+        JMenuItem undoItem = new JMenuItem("Undo");
+        undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Z, shortcut));
+        undoItem.addActionListener(e -> canvasPanel.undo());
+        editMenu.add(undoItem);
+        JMenuItem redoItem = new JMenuItem("Redo");
+        redoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_Y, shortcut));
+        redoItem.addActionListener(e -> canvasPanel.redo());
+        editMenu.add(redoItem);
+        editMenu.addSeparator();
+        JMenuItem fillItem = new JMenuItem("Fill with Current Color");
+        fillItem.addActionListener(e -> canvasPanel.fillSelection(shapePanel.colorPanel.getSelectedColor()));
+        editMenu.add(fillItem);
+        editMenu.addSeparator();
+        JMenuItem addTextItem = new JMenuItem("Add Text...");
+        addTextItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_T, shortcut));
+        addTextItem.addActionListener(e -> {
+            String text = promptText("Add Text", "");
+            if (text != null && !text.isBlank()) canvasPanel.addText(text, shapePanel.colorPanel.getSelectedColor());
+        });
+        editMenu.add(addTextItem);
+        JMenuItem editTextItem = new JMenuItem("Edit Text...");
+        editTextItem.addActionListener(e -> {
+            TextDrawable selected = canvasPanel.selectedText();
+            if (selected == null) return;
+            String text = promptText("Edit Text", selected.text);
+            if (text != null && !text.isBlank()) canvasPanel.editText(selected, text);
+        });
+        editMenu.add(editTextItem);
+        JMenuItem textStyleItem = new JMenuItem("Text Style...");
+        textStyleItem.addActionListener(e -> promptTextStyle());
+        editMenu.add(textStyleItem);
+        editMenu.addSeparator();
+        JMenuItem groupItem = new JMenuItem("Group");
+        groupItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_G, shortcut));
+        groupItem.addActionListener(e -> canvasPanel.groupSelection());
+        editMenu.add(groupItem);
+        JMenuItem ungroupItem = new JMenuItem("Ungroup");
+        ungroupItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_G, shortcut | InputEvent.SHIFT_DOWN_MASK));
+        ungroupItem.addActionListener(e -> canvasPanel.ungroupSelection());
+        editMenu.add(ungroupItem);
+        menuBar.add(editMenu);
+
+        JMenu viewMenu = new JMenu("View");
+        JCheckBoxMenuItem overlayItem = new JCheckBoxMenuItem("Performance overlay", Instrumentation.enabled);
+        overlayItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0));
+        overlayItem.addActionListener(e -> canvasPanel.setOverlayVisible(overlayItem.isSelected()));
+        viewMenu.add(overlayItem);
+        viewMenu.addSeparator();
+        JMenuItem zoomInItem = new JMenuItem("Zoom In");
+        zoomInItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS, shortcut));
+        zoomInItem.addActionListener(e -> canvasPanel.zoomBy(1.25));
+        viewMenu.add(zoomInItem);
+        JMenuItem zoomOutItem = new JMenuItem("Zoom Out");
+        zoomOutItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_MINUS, shortcut));
+        zoomOutItem.addActionListener(e -> canvasPanel.zoomBy(0.8));
+        viewMenu.add(zoomOutItem);
+        JMenuItem actualSizeItem = new JMenuItem("Actual Size");
+        actualSizeItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_1, shortcut));
+        actualSizeItem.addActionListener(e -> canvasPanel.setView(1, 0, 0));
+        viewMenu.add(actualSizeItem);
+        JMenuItem fitItem = new JMenuItem("Fit Page");
+        fitItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_0, shortcut));
+        fitItem.addActionListener(e -> canvasPanel.fitPage());
+        viewMenu.add(fitItem);
+        menuBar.add(viewMenu);
+        return menuBar;
+    }
+
+    void openPoster() {
+        JFileChooser chooser = new JFileChooser();
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        new SwingWorker<PosterDocument.Loaded, Void>() {
+            @Override
+            protected PosterDocument.Loaded doInBackground() throws Exception {
+                return PosterDocument.load(file, ImagePool.SHARED);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    PosterDocument.Loaded loaded = get();
+                    document = loaded.document;
+                    canvasPanel.replaceDrawables(loaded.drawables, loaded.page);
+                    setTitle("Poster app - " + file.getName());
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(PosterApp.this, "Open failed: " + ex.getCause());
+                }
+            }
+        }.execute();
+    }
+
+    void savePoster(boolean chooseFile) {
+        if (document == null || chooseFile) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(document != null ? document.file : new File("poster.poster"));
+            if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+            File file = chooser.getSelectedFile().getAbsoluteFile();
+            if (document == null || !document.file.equals(file)) document = new PosterDocument(file);
+        }
+
+        PosterDocument target = document;
+        List<Drawable> scene = canvasPanel.snapshot();
+        Rectangle page = canvasPanel.getPageBounds();
+        File file = document.file;
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                target.save(scene, page);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                    setTitle("Poster app - " + file.getName());
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(PosterApp.this, "Save failed: " + ex.getCause());
+                }
+            }
+        }.execute();
+    }
+
+    void exportPoster() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setSelectedFile(new File("poster.png"));
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File file = chooser.getSelectedFile();
+        String name = file.getName().toLowerCase();
+        String format = name.endsWith(".tif") || name.endsWith(".tiff") ? "tiff" : "png";
+
+        String dpiText = JOptionPane.showInputDialog(this, "Resolution (DPI):", "300");
+        if (dpiText == null) return;
+        int dpi;
+        try {
+            dpi = Integer.parseInt(dpiText.trim());
+        } catch (NumberFormatException ex) {
+            JOptionPane.showMessageDialog(this, "Invalid resolution: " + dpiText);
+            return;
+        }
+
+        PosterExporter exporter = new PosterExporter(canvasPanel.snapshot(),
+                canvasPanel.getPageBounds(), PosterExporter.scaleForDpi(dpi));
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws Exception {
+                exporter.write(file, format);
+                return null;
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    get();
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(PosterApp.this, "Export failed: " + ex.getCause());
+                }
+            }
+        }.execute();
+    }
+
+    void updateButtonPanel(boolean isSelected) {
+        buttonPanel.updateButtonStates(isSelected);
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--batch")) {
+            System.exit(BatchRenderer.run(Arrays.copyOfRange(args, 1, args.length)));
+        }
+        SwingUtilities.invokeLater(PosterApp::new);
+    }
+}
+
+class ImagePanel extends JPanel {
+    PosterApp posterApp;
+    JPanel gridPanel;
+    JScrollPane scrollPane;
+    ArrayList<JLabel> tiles = new ArrayList<>();
+    ArrayList<File> files = new ArrayList<>();
+    TreeSet<Integer> pendingTiles = new TreeSet<>();
+    volatile int firstVisibleTile = 0;
+    ThumbnailCache thumbnailCache;
+    AtomicInteger remainingTiles = new AtomicInteger();
+    File draggingFile = null;
+    Point dragOffset = null;
+
+    static final Icon PLACEHOLDER = new ImageIcon(placeholderImage());
+
+    public ImagePanel(PosterApp posterApp) {
+        this.posterApp = posterApp;
+        setLayout(new BorderLayout());
+
+        gridPanel = new JPanel(new GridLayout(0, 3, 5, 5));
+        scrollPane = new JScrollPane(gridPanel);
+        add(scrollPane, BorderLayout.CENTER);
+
+        File imageDir = new File("images");
+        File[] imageFiles = imageDir.listFiles(ImagePanel::isImageFile);
+        if (imageFiles == null) return;
+        Arrays.sort(imageFiles);
+        thumbnailCache = new ThumbnailCache(new File(imageDir, ".thumbnails.pack"), Thumbnails.SIZE, Thumbnails.SIZE);
+        remainingTiles.set(imageFiles.length);
+
+        for (File file : imageFiles) {
+            JLabel label = new JLabel(PLACEHOLDER);
+            gridPanel.add(label);
+            tiles.add(label);
+            files.add(file);
+            pendingTiles.add(files.size() - 1);
+
+            label.addMouseListener(new MouseAdapter() {
+                @Override
+                public void mousePressed(MouseEvent e) {
+                    draggingFile = file;
+                    dragOffset = e.getPoint();
+                }
+
+                @Override
+                public void mouseReleased(MouseEvent e) {
+                    if (draggingFile != null) {
+                        Point canvasLocation = posterApp.canvasPanel.getLocationOnScreen();
+                        Dimension canvasSize = posterApp.canvasPanel.getSize();
+
+                        Rectangle canvasBounds = new Rectangle(canvasLocation, canvasSize);
+                        Point releasePoint = new Point(e.getXOnScreen(), e.getYOnScreen());
+
+                        if (canvasBounds.contains(releasePoint)) {
+                            Point at = posterApp.canvasPanel.toDocument(new Point(releasePoint.x - canvasLocation.x - dragOffset.x,
+                                    releasePoint.y - canvasLocation.y - dragOffset.y));
+
+                            // Only the proxy is decoded, off the EDT; the drawable appears once it is ready.
+                            File dropped = draggingFile;
+                            new SwingWorker<MipMap, Void>() {
+                                @Override
+                                protected MipMap doInBackground() throws Exception {
+                                    return ImagePool.SHARED.getProxy(ImageSource.of(dropped));
+                                }
+
+                                @Override
+                                protected void done() {
+                                    try {
+                                        posterApp.canvasPanel.addDrawable(new ImageDrawable(get(), at.x, at.y));
+                                    } catch (Exception ex) {
+                                        ex.printStackTrace();
+                                    }
+                                }
+                            }.execute();
+                        }
+
+                        draggingFile = null;
+                    }
+                }
+            });
+        }
+
+        scrollPane.getViewport().addChangeListener(e -> updateVisibleTiles());
+
+        // Decoding is CPU-bound, so platform threads up to the core count; the Java 17 target has no virtual threads.
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService loader = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "thumbnail-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < threads; i++) {
+            loader.execute(this::loadThumbnails);
+        }
+        loader.shutdown();
+    }
+
+    static boolean isImageFile(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        if (!file.isFile() || dot < 0) return false;
+        String suffix = name.substring(dot + 1).toLowerCase();
+        for (String supported : ImageIO.getReaderFileSuffixes()) {
+            if (supported.equalsIgnoreCase(suffix)) return true;
+        }
+        return false;
+    }
+
+    static BufferedImage placeholderImage() {
+        BufferedImage image = new BufferedImage(Thumbnails.SIZE, Thumbnails.SIZE, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(Color.LIGHT_GRAY);
+        g2d.fillRect(0, 0, Thumbnails.SIZE, Thumbnails.SIZE);
+        g2d.dispose();
+        return image;
+    }
+
+    private void updateVisibleTiles() {
+        Rectangle visible = gridPanel.getVisibleRect();
+        for (int i = 0; i < tiles.size(); i++) {
+            if (tiles.get(i).getBounds().intersects(visible)) {
+                firstVisibleTile = i;
+                return;
+            }
+        }
+    }
+
+    private int nextPendingTile() {
+        synchronized (pendingTiles) {
+            if (pendingTiles.isEmpty()) return -1;
+            Integer next = pendingTiles.ceiling(firstVisibleTile);
+            if (next == null) next = pendingTiles.first();
+            pendingTiles.remove(next);
+            return next;
+        }
+    }
+
+    private void loadThumbnails() {
+        int tile;
+        while ((tile = nextPendingTile()) >= 0) {
+            File file = files.get(tile);
+            BufferedImage thumbnail = thumbnailCache.get(file);
+            if (thumbnail == null) {
+                try {
+                    thumbnail = Thumbnails.read(file, Thumbnails.SIZE, Thumbnails.SIZE);
+                    if (thumbnail != null) thumbnailCache.put(file, thumbnail);
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+
+            JLabel label = tiles.get(tile);
+            BufferedImage loaded = thumbnail;
+            SwingUtilities.invokeLater(() -> {
+                if (loaded != null) {
+                    label.setIcon(new ImageIcon(loaded));
+                } else {
+                    gridPanel.remove(label);
+                    gridPanel.revalidate();
+                    gridPanel.repaint();
+                }
+            });
+
+            if (remainingTiles.decrementAndGet() == 0) {
+                try {
+                    thumbnailCache.save();
+                } catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }
+    }
+}
+
+class ShapePanel extends JPanel {
+    PosterApp posterApp;
+    Point dragOffset = null;
+    Shape draggingShape = null;
+    ColorPanel colorPanel;
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(0, 150);
+    }
+
+    public ShapePanel(PosterApp posterApp) {
+        this.posterApp = posterApp;
+        setLayout(new BorderLayout());
+
+        JPanel shapeContainer = new JPanel(null);
+        shapeContainer.setPreferredSize(new Dimension(0, 80));
+
+        JPanel circlePanel = new JPanel() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                Graphics2D g2d = (Graphics2D) g;
+                g2d.setColor(colorPanel.getSelectedColor());
+                g2d.fillOval(5, 5, 40, 40);
+            }
+        };
+        circlePanel.setBounds(20, 10, 50, 50);
+        shapeContainer.add(circlePanel);
+
+        JPanel squarePanel = new JPanel() {
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                Graphics2D g2d = (Graphics2D) g;
+                g2d.setColor(colorPanel.getSelectedColor());
+                g2d.fillRect(5, 5, 40, 40);
+            }
+        };
+        squarePanel.setBounds(100, 10, 50, 50);
+        shapeContainer.add(squarePanel);
+
+        add(shapeContainer, BorderLayout.CENTER);
+
+        colorPanel = new ColorPanel(shapeContainer::repaint);
+        add(colorPanel, BorderLayout.SOUTH);
+
+        MouseAdapter shapeDragHandler = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                Component comp = e.getComponent();
+                dragOffset = e.getPoint();
+                if (comp == circlePanel) {
+                    draggingShape = new Ellipse2D.Double(e.getXOnScreen() - dragOffset.x, e.getYOnScreen() - dragOffset.y, 50, 50);
+                } else if (comp == squarePanel) {
+                    draggingShape = new Rectangle2D.Double(e.getXOnScreen() - dragOffset.x, e.getYOnScreen() - dragOffset.y, 50, 50);
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent e) {
+                if (draggingShape != null) {
+                    Point canvasLocation = posterApp.canvasPanel.getLocationOnScreen();
+                    Dimension canvasSize = posterApp.canvasPanel.getSize();
+
+                    Rectangle canvasBounds = new Rectangle(canvasLocation, canvasSize);
+                    Point releasePoint = new Point(e.getXOnScreen(), e.getYOnScreen());
+
+                    if (canvasBounds.contains(releasePoint)) {
+                        Point at = posterApp.canvasPanel.toDocument(new Point(releasePoint.x - canvasLocation.x - dragOffset.x,
+                                releasePoint.y - canvasLocation.y - dragOffset.y));
+                        int x = at.x;
+                        int y = at.y;
+
+                        Shape shape = null;
+                        if (draggingShape instanceof Ellipse2D) {
+                            shape = new Ellipse2D.Double(x, y, 50, 50);
+                        } else if (draggingShape instanceof Rectangle2D) {
+                            shape = new Rectangle2D.Double(x, y, 50, 50);
+                        }
+
+                        if (shape != null) {
+                            posterApp.canvasPanel.addDrawable(new ShapeDrawable(shape, colorPanel.getSelectedColor()));
+                        }
+                    }
+
+                    draggingShape = null;
+                }
+            }
+        };
+
+        circlePanel.addMouseListener(shapeDragHandler);
+        circlePanel.addMouseMotionListener(shapeDragHandler);
+        squarePanel.addMouseListener(shapeDragHandler);
+        squarePanel.addMouseMotionListener(shapeDragHandler);
+    }
+}
+
+class ColorPanel extends JPanel {
+    private final JTextField redField;
+    private final JTextField greenField;
+    private final JTextField blueField;
+
+    public ColorPanel(Runnable onColorChange) {
+        setLayout(new GridLayout(3, 2));
+        add(new JLabel("Red:"));
+        redField = new JTextField("0");
+        add(redField);
+
+        add(new JLabel("Green:"));
+        greenField = new JTextField("0");
+        add(greenField);
+
+        add(new JLabel("Blue:"));
+        blueField = new JTextField("0");
+        add(blueField);
+
+        DocumentListener colorListener = new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                onColorChange.run();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                onColorChange.run();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                onColorChange.run();
+            }
+        };
+        redField.getDocument().addDocumentListener(colorListener);
+        greenField.getDocument().addDocumentListener(colorListener);
+        blueField.getDocument().addDocumentListener(colorListener);
+    }
+
+    public Color getSelectedColor() {
+        try {
+            int r = Math.min(255, Math.max(0, Integer.parseInt(redField.getText())));
+            int g = Math.min(255, Math.max(0, Integer.parseInt(greenField.getText())));
+            int b = Math.min(255, Math.max(0, Integer.parseInt(blueField.getText())));
+            return new Color(r, g, b);
+        } catch (NumberFormatException e) {
+            return Color.BLACK;
+        }
+    }
+}
+
+class ButtonPanel extends JPanel {
+    PosterApp posterApp;
+
+    JButton upButton, downButton, leftButton, rightButton;
+    JButton rotateCWButton, rotateCCWButton;
+    JButton layerUpButton, layerDownButton;
+    JButton layerTopButton, layerBottomButton;
+
+    @Override
+    public Dimension getPreferredSize() {
+        return new Dimension(0, 50);
+    }
+
+    public ButtonPanel(PosterApp posterApp) {
+        this.posterApp = posterApp;
+        setLayout(new GridLayout(1, 10));
+
+        leftButton = new JButton("←");
+        upButton = new JButton("↑");
+        downButton = new JButton("↓");
+        rightButton = new JButton("→");
+
+        rotateCCWButton = new JButton("⟲");
+        rotateCWButton = new JButton("⟳");
+
+        layerUpButton = new JButton("⇧");
+        layerDownButton = new JButton("⇩");
+        layerTopButton = new JButton("⤒");
+        layerBottomButton = new JButton("⤓");
+
+        add(leftButton);
+        add(upButton);
+        add(downButton);
+        add(rightButton);
+        add(rotateCCWButton);
+        add(rotateCWButton);
+        add(layerUpButton);
+        add(layerDownButton);
+        add(layerTopButton);
+        add(layerBottomButton);
+
+        leftButton.addActionListener(e -> moveSelected(-1, 0));
+        rightButton.addActionListener(e -> moveSelected(1, 0));
+        upButton.addActionListener(e -> moveSelected(0, -1));
+        downButton.addActionListener(e -> moveSelected(0, 1));
+
+        rotateCWButton.addActionListener(e -> rotateSelected(Math.toRadians(1)));
+        rotateCCWButton.addActionListener(e -> rotateSelected(-Math.toRadians(1)));
+
+        layerUpButton.addActionListener(e -> changeLayer(1));
+        layerDownButton.addActionListener(e -> changeLayer(-1));
+        layerTopButton.addActionListener(e -> moveToFront());
+        layerBottomButton.addActionListener(e -> moveToBack());
+    }
+
+    void updateButtonStates(boolean isEnabled) {
+        leftButton.setEnabled(isEnabled);
+        rightButton.setEnabled(isEnabled);
+        upButton.setEnabled(isEnabled);
+        downButton.setEnabled(isEnabled);
+        rotateCWButton.setEnabled(isEnabled);
+        rotateCCWButton.setEnabled(isEnabled);
+        layerUpButton.setEnabled(isEnabled);
+        layerDownButton.setEnabled(isEnabled);
+        layerTopButton.setEnabled(isEnabled);
+        layerBottomButton.setEnabled(isEnabled);
+    }
+
+    private void moveSelected(int dx, int dy) {
+        posterApp.canvasPanel.transformSelection(AffineTransform.getTranslateInstance(dx, dy));
+    }
+
+    private void rotateSelected(double radians) {
+        CanvasPanel canvas = posterApp.canvasPanel;
+        Rectangle bounds = canvas.getSelectionBounds();
+        if (bounds != null) {
+            canvas.transformSelection(AffineTransform.getRotateInstance(radians, bounds.getCenterX(), bounds.getCenterY()));
+        }
+    }
+
+    private void changeLayer(int direction) {
+        posterApp.canvasPanel.moveSelectionLayer(direction);
+    }
+
+    private void moveToFront() {
+        posterApp.canvasPanel.moveSelectionToFront();
+    }
+
+    private void moveToBack() {
+        posterApp.canvasPanel.moveSelectionToBack();
+    }
+}
@@ -0,0 +1,634 @@
+package poster;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageInputStreamImpl;
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Rectangle2D;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Poster file layout:
+//   header   magic, version
+//   blobs    encoded image files, each stored once under its SHA-256
+//   records  page x, y, width, height, drawable count, then one record per drawable in z-order (groups nest their children;
+//            shapes, images and text each have their own record type)
+//   index    blob count, then hash, offset, length, width, height per blob
+//   footer   records offset, index offset, footer magic
+// Saving again appends only the new blobs plus fresh records, index and footer; the footer at the end
+// of the file always points at the current records. Once the bytes earlier saves left behind outweigh
+// the live ones, the next save rewrites the file with only what it refers to. Loading reads records
+// and index, and images are read from their blob the first time they are drawn.
+class PosterDocument {
+    private static final int MAGIC = 0x50535452;
+    private static final int FOOTER_MAGIC = 0x5053464E;
+    // Version 2 added text records, version 3 the page. Older files are still read, with the default page,
+    // and rewritten in full on the next save.
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 8;
+    private static final int FOOTER_BYTES = 20;
+    private static final int HASH_BYTES = 32;
+
+    static final byte SHAPE = 1;
+    static final byte IMAGE = 2;
+    static final byte GROUP = 3;
+    static final byte TEXT = 4;
+
+    static final byte RECTANGLE = 1;
+    static final byte ELLIPSE = 2;
+    static final byte PATH = 3;
+
+    final File file;
+    private final Map<String, Blob> blobs = new HashMap<>();
+    private final Map<ImageSource, String> hashes = new ConcurrentHashMap<>();
+    private long length;
+    // Bytes the current save refers to; the rest of the file is blobs and records of earlier saves.
+    private long live;
+    private int version = VERSION;
+
+    PosterDocument(File file) {
+        this.file = file.getAbsoluteFile();
+    }
+
+    // An image stored in a poster file, read from the file whenever it is decoded and equal to any blob
+    // with the same content. A rewrite of the file moves every blob of it to its new offset, or onto the
+    // heap when the new file no longer contains it, so no blob keeps the file open or mapped.
+    static final class Blob implements ImageSource {
+        // Blobs read under the read lock; a rewrite replaces the file and moves its blobs under the write lock.
+        private static final ReentrantReadWriteLock FILES = new ReentrantReadWriteLock();
+        // The blobs of each file, whichever document or journal created them; weak, so blobs that no
+        // image uses any more drop out.
+        private static final Map<File, List<WeakReference<Blob>>> BY_FILE = new HashMap<>();
+
+        final File file;
+        final String hash;
+        final int length;
+        final int width;
+        final int height;
+        private volatile long offset;
+        private volatile byte[] detached;
+
+        Blob(File file, String hash, long offset, int length, int width, int height) {
+            this.file = file;
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+            this.width = width;
+            this.height = height;
+            synchronized (BY_FILE) {
+                BY_FILE.computeIfAbsent(file.getAbsoluteFile(), key -> new ArrayList<>()).add(new WeakReference<>(this));
+            }
+        }
+
+        static List<Blob> of(File file) {
+            List<Blob> blobs = new ArrayList<>();
+            synchronized (BY_FILE) {
+                List<WeakReference<Blob>> references = BY_FILE.get(file.getAbsoluteFile());
+                if (references == null) return blobs;
+                references.removeIf(reference -> {
+                    Blob blob = reference.get();
+                    if (blob != null) blobs.add(blob);
+                    return blob == null;
+                });
+            }
+            return blobs;
+        }
+
+        long offset() {
+            return offset;
+        }
+
+        // Whether the bytes at this blob's offset still hash to it; a rewrite of the file may have put
+        // another blob, or nothing at all, where it used to be.
+        boolean intact() {
+            try {
+                return sha256(read()).equals(hash);
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+
+        private byte[] read() throws IOException {
+            FILES.readLock().lock();
+            try {
+                byte[] heap = detached;
+                if (heap != null) return heap;
+                ByteBuffer bytes = ByteBuffer.allocate(length);
+                try (FileChannel channel = FileChannel.open(file.toPath())) {
+                    readFully(channel, bytes, offset);
+                }
+                return bytes.array();
+            } finally {
+                FILES.readLock().unlock();
+            }
+        }
+
+        @Override
+        public ImageInputStream openStream() throws IOException {
+            return new ByteBufferImageInputStream(ByteBuffer.wrap(read()));
+        }
+
+        @Override
+        public byte[] readAllBytes() throws IOException {
+            byte[] bytes = read();
+            return bytes == detached ? bytes.clone() : bytes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Blob && ((Blob) o).hash.equals(hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return file.getName() + '#' + hash.substring(0, 12);
+        }
+    }
+
+    static final class ByteBufferImageInputStream extends ImageInputStreamImpl {
+        private final ByteBuffer buffer;
+
+        ByteBufferImageInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            if (streamPos >= buffer.limit()) return -1;
+            bitOffset = 0;
+            return buffer.get((int) streamPos++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (streamPos >= buffer.limit()) return -1;
+            bitOffset = 0;
+            int count = (int) Math.min(len, buffer.limit() - streamPos);
+            buffer.get((int) streamPos, b, off, count);
+            streamPos += count;
+            return count;
+        }
+
+        @Override
+        public long length() {
+            return buffer.limit();
+        }
+    }
+
+    static final class Loaded {
+        final PosterDocument document;
+        final List<Drawable> drawables;
+        final Rectangle page;
+
+        Loaded(PosterDocument document, List<Drawable> drawables, Rectangle page) {
+            this.document = document;
+            this.drawables = drawables;
+            this.page = page;
+        }
+    }
+
+    // The blobs of the file's current save by hash, without reading any drawables.
+    static Map<String, Blob> index(File file) throws IOException {
+        return load(file, null).document.blobs;
+    }
+
+    // With no pool, only the index of the current save is read.
+    static Loaded load(File file, ImagePool pool) throws IOException {
+        PosterDocument document = new PosterDocument(file);
+        try (FileChannel channel = FileChannel.open(document.file.toPath())) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + FOOTER_BYTES) throw new IOException("Not a poster file: " + file);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() != MAGIC) throw new IOException("Not a poster file: " + file);
+            document.version = header.getInt();
+            if (document.version < 1 || document.version > VERSION) throw new IOException("Unsupported poster version: " + file);
+
+            // A save that was cut off leaves a torn tail behind the footer of the previous save, which
+            // still describes a complete document; fall back to the last footer that reads cleanly.
+            Exception failure = null;
+            for (long end = size; end >= HEADER_BYTES + FOOTER_BYTES; end = previousFooterEnd(channel, end - 1)) {
+                try {
+                    return document.read(channel, end, pool);
+                } catch (IOException | RuntimeException ex) {
+                    if (failure == null) failure = ex;
+                }
+            }
+            throw new IOException("Corrupt poster file: " + file, failure);
+        }
+    }
+
+    // Reads the document whose footer ends at the given file position.
+    private Loaded read(FileChannel channel, long end, ImagePool pool) throws IOException {
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_BYTES);
+        readFully(channel, footer, end - FOOTER_BYTES);
+        footer.flip();
+        long recordsOffset = footer.getLong();
+        long indexOffset = footer.getLong();
+        if (footer.getInt() != FOOTER_MAGIC || recordsOffset < HEADER_BYTES || indexOffset < recordsOffset
+                || indexOffset > end - FOOTER_BYTES) {
+            throw new IOException("Corrupt poster file: " + file);
+        }
+
+        blobs.clear();
+        long tailBytes = end - FOOTER_BYTES - recordsOffset;
+        if (tailBytes > Integer.MAX_VALUE) throw new IOException("Corrupt poster file: " + file);
+        ByteBuffer tail = ByteBuffer.allocate((int) tailBytes);
+        readFully(channel, tail, recordsOffset);
+        tail.position((int) (indexOffset - recordsOffset));
+        Blob[] index = new Blob[tail.getInt()];
+        byte[] hash = new byte[HASH_BYTES];
+        for (int i = 0; i < index.length; i++) {
+            tail.get(hash);
+            long offset = tail.getLong();
+            int length = tail.getInt();
+            if (offset < HEADER_BYTES || offset + length > recordsOffset) throw new IOException("Corrupt poster file: " + file);
+            Blob blob = new Blob(file, HexFormat.of().formatHex(hash), offset, length, tail.getInt(), tail.getInt());
+            index[i] = blob;
+            blobs.put(blob.hash, blob);
+        }
+        if (tail.hasRemaining()) throw new IOException("Corrupt poster file: " + file);
+        if (pool == null) return new Loaded(this, List.of(), null);
+
+        tail.position(0);
+        Rectangle page = version >= 3 ? new Rectangle(tail.getInt(), tail.getInt(), tail.getInt(), tail.getInt())
+                : new Rectangle(CanvasPanel.DEFAULT_PAGE);
+        if (page.width <= 0 || page.height <= 0) throw new IOException("Corrupt poster file: " + file);
+        int count = tail.getInt();
+        List<Drawable> drawables = new ArrayList<>(count);
+        ImageRefReader images = in -> {
+            Blob blob = index[in.getInt()];
+            return pool.get(blob, blob.width, blob.height);
+        };
+        for (int i = 0; i < count; i++) {
+            drawables.add(readDrawable(tail, images));
+        }
+        if (tail.position() != indexOffset - recordsOffset) throw new IOException("Corrupt poster file: " + file);
+        length = end;
+        live = liveBytes(List.of(index), tailBytes + FOOTER_BYTES);
+        return new Loaded(this, drawables, page);
+    }
+
+    // Scans backwards from before for the end of an earlier footer, or returns -1 when there is none.
+    private static long previousFooterEnd(FileChannel channel, long before) throws IOException {
+        ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+        long end = before;
+        while (end >= HEADER_BYTES + FOOTER_BYTES) {
+            long start = Math.max(HEADER_BYTES + FOOTER_BYTES - 4, end - chunk.capacity());
+            readFully(channel, chunk.clear().limit((int) (end - start)), start);
+            for (int i = chunk.limit() - 4; i >= 0; i--) {
+                if (chunk.getInt(i) == FOOTER_MAGIC) return start + i + 4;
+            }
+            // Overlap by three bytes so a magic that straddles two chunks is still found.
+            end = start + 3;
+            if (start == HEADER_BYTES + FOOTER_BYTES - 4) break;
+        }
+        return -1;
+    }
+
+    // How image records refer to their pixels: a blob index in poster files, a source reference in the autosave journal.
+    interface ImageRefWriter {
+        void write(DataOutputStream out, MipMap mipMap) throws IOException;
+    }
+
+    interface ImageRefReader {
+        // Returns null when the image is gone; the drawable is then dropped.
+        MipMap read(ByteBuffer in);
+    }
+
+    static Drawable readDrawable(ByteBuffer in, ImageRefReader images) {
+        byte type = in.get();
+        double[] matrix = new double[6];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = in.getDouble();
+        }
+
+        Drawable drawable;
+        if (type == SHAPE) {
+            Color color = new Color(in.getInt(), true);
+            drawable = new ShapeDrawable(readShape(in), color);
+        } else if (type == IMAGE) {
+            MipMap mipMap = images.read(in);
+            drawable = mipMap == null ? null : new ImageDrawable(mipMap, 0, 0);
+        } else if (type == GROUP) {
+            List<Drawable> children = new ArrayList<>();
+            for (int i = in.getInt(); i > 0; i--) {
+                Drawable child = readDrawable(in, images);
+                if (child != null) children.add(child);
+            }
+            drawable = children.isEmpty() ? null : new GroupDrawable(children);
+        } else if (type == TEXT) {
+            Color color = new Color(in.getInt(), true);
+            String text = readString(in);
+            Font font = new Font(readString(in), in.get(), 1).deriveFont(in.getFloat());
+            drawable = new TextDrawable(text, font, color, in.getFloat());
+        } else {
+            throw new IllegalStateException("Unknown record type " + type);
+        }
+        if (drawable != null) drawable.transform.setTransform(new AffineTransform(matrix));
+        return drawable;
+    }
+
+    private static Shape readShape(ByteBuffer in) {
+        byte kind = in.get();
+        if (kind == RECTANGLE) {
+            return new Rectangle2D.Double(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+        }
+        if (kind == ELLIPSE) {
+            return new Ellipse2D.Double(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+        }
+        if (kind != PATH) throw new IllegalStateException("Unknown shape kind " + kind);
+
+        Path2D.Double path = new Path2D.Double(in.get());
+        for (int i = in.getInt(); i > 0; i--) {
+            switch (in.get()) {
+                case PathIterator.SEG_MOVETO -> path.moveTo(in.getDouble(), in.getDouble());
+                case PathIterator.SEG_LINETO -> path.lineTo(in.getDouble(), in.getDouble());
+                case PathIterator.SEG_QUADTO -> path.quadTo(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble());
+                case PathIterator.SEG_CUBICTO -> path.curveTo(in.getDouble(), in.getDouble(), in.getDouble(),
+                        in.getDouble(), in.getDouble(), in.getDouble());
+                default -> path.closePath();
+            }
+        }
+        return path;
+    }
+
+    // Pass a scene snapshot when saving off the EDT.
+    void save(List<Drawable> drawables, Rectangle page) throws IOException {
+        Save save = new Save();
+        try (DataOutputStream out = new DataOutputStream(save.records)) {
+            out.writeInt(page.x);
+            out.writeInt(page.y);
+            out.writeInt(page.width);
+            out.writeInt(page.height);
+            out.writeInt(drawables.size());
+            for (Drawable drawable : drawables) {
+                writeDrawable(out, drawable, save);
+            }
+        }
+        writeSave(save);
+    }
+
+    private static final class Save implements ImageRefWriter {
+        final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        final List<MipMap> images = new ArrayList<>();
+        final Map<MipMap, Integer> imageIndex = new IdentityHashMap<>();
+
+        @Override
+        public void write(DataOutputStream out, MipMap mipMap) throws IOException {
+            Integer position = imageIndex.get(mipMap);
+            if (position == null) {
+                position = images.size();
+                images.add(mipMap);
+                imageIndex.put(mipMap, position);
+            }
+            out.writeInt(position);
+        }
+    }
+
+    static void writeDrawable(DataOutputStream out, Drawable drawable, ImageRefWriter images) throws IOException {
+        byte type = drawable instanceof GroupDrawable ? GROUP : drawable instanceof ImageDrawable ? IMAGE
+                : drawable instanceof TextDrawable ? TEXT : SHAPE;
+        out.writeByte(type);
+        double[] matrix = new double[6];
+        drawable.transform.getMatrix(matrix);
+        for (double value : matrix) {
+            out.writeDouble(value);
+        }
+
+        if (type == SHAPE) {
+            ShapeDrawable shape = (ShapeDrawable) drawable;
+            out.writeInt(shape.color.getRGB());
+            writeShape(out, shape.originalShape);
+        } else if (type == IMAGE) {
+            images.write(out, ((ImageDrawable) drawable).mipMap);
+        } else if (type == TEXT) {
+            TextDrawable text = (TextDrawable) drawable;
+            out.writeInt(text.color.getRGB());
+            writeString(out, text.text);
+            writeString(out, text.font.getName());
+            out.writeByte(text.font.getStyle());
+            out.writeFloat(text.font.getSize2D());
+            out.writeFloat(text.wrapWidth);
+        } else {
+            List<Drawable> children = ((GroupDrawable) drawable).children;
+            out.writeInt(children.size());
+            for (Drawable child : children) {
+                writeDrawable(out, child, images);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeShape(DataOutputStream out, Shape shape) throws IOException {
+        if (shape instanceof Rectangle2D || shape instanceof Ellipse2D) {
+            Rectangle2D frame = ((java.awt.geom.RectangularShape) shape).getFrame();
+            out.writeByte(shape instanceof Rectangle2D ? RECTANGLE : ELLIPSE);
+            out.writeDouble(frame.getX());
+            out.writeDouble(frame.getY());
+            out.writeDouble(frame.getWidth());
+            out.writeDouble(frame.getHeight());
+            return;
+        }
+
+        PathIterator segments = shape.getPathIterator(null);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream bodyOut = new DataOutputStream(body);
+        double[] coords = new double[6];
+        int count = 0;
+        for (; !segments.isDone(); segments.next()) {
+            int segment = segments.currentSegment(coords);
+            bodyOut.writeByte(segment);
+            int values = switch (segment) {
+                case PathIterator.SEG_MOVETO, PathIterator.SEG_LINETO -> 2;
+                case PathIterator.SEG_QUADTO -> 4;
+                case PathIterator.SEG_CUBICTO -> 6;
+                default -> 0;
+            };
+            for (int i = 0; i < values; i++) {
+                bodyOut.writeDouble(coords[i]);
+            }
+            count++;
+        }
+        out.writeByte(PATH);
+        out.writeByte(segments.getWindingRule());
+        out.writeInt(count);
+        body.writeTo(out);
+    }
+
+    private synchronized void writeSave(Save save) throws IOException {
+        // Appending is only safe onto the exact file this document last read or wrote, and only worth it
+        // while no more than half the file is dead.
+        boolean append = length > 0 && file.length() == length && version == VERSION && length - live <= live;
+
+        File target = append ? file : new File(file.getPath() + ".tmp");
+        Map<String, Blob> written = append ? new HashMap<>(blobs) : new HashMap<>();
+        long end;
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                append ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+            try {
+                end = write(channel, save, append ? length : 0, written);
+            } catch (IOException | RuntimeException ex) {
+                // Cut a failed append back to the last complete save, so the file loads as before and the
+                // next save can append again.
+                if (append) channel.truncate(length);
+                throw ex;
+            }
+        } catch (IOException | RuntimeException ex) {
+            if (!append) Files.deleteIfExists(target.toPath());
+            throw ex;
+        }
+        if (!append) {
+            // Images of earlier saves may still be on the canvas, in the undo history or in the journal:
+            // blobs the new file keeps follow it to their new offset, the others are read onto the heap first.
+            Blob.FILES.writeLock().lock();
+            try {
+                List<Blob> replaced = Blob.of(file);
+                for (Blob blob : replaced) {
+                    if (written.containsKey(blob.hash)) continue;
+                    try {
+                        blob.detached = blob.read();
+                    } catch (IOException ex) {
+                        // Unreadable already, for example because the file was replaced behind our back.
+                    }
+                }
+                Files.move(target.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                for (Blob blob : replaced) {
+                    Blob moved = written.get(blob.hash);
+                    if (moved != null) blob.offset = moved.offset;
+                }
+            } finally {
+                Blob.FILES.writeLock().unlock();
+            }
+        }
+        blobs.clear();
+        blobs.putAll(written);
+        length = end;
+        version = VERSION;
+    }
+
+    // Writes the save at the channel's position, which is the given file position, reusing and adding to
+    // the written blobs. Returns the new file length.
+    private long write(FileChannel channel, Save save, long position, Map<String, Blob> written) throws IOException {
+        if (position == 0) {
+            position += writeFully(channel, ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).flip());
+        }
+
+        List<Blob> index = new ArrayList<>(save.images.size());
+        for (MipMap mipMap : save.images) {
+            byte[] encoded = null;
+            String hash = mipMap.source instanceof Blob ? ((Blob) mipMap.source).hash
+                    : mipMap.source == null ? null : hashes.get(mipMap.source);
+            if (hash == null) {
+                encoded = encode(mipMap);
+                hash = sha256(encoded);
+                if (mipMap.source != null) hashes.put(mipMap.source, hash);
+            }
+            Blob blob = written.get(hash);
+            if (blob == null) {
+                if (encoded == null) encoded = encode(mipMap);
+                blob = new Blob(file, hash, position, encoded.length, mipMap.width, mipMap.height);
+                position += writeFully(channel, ByteBuffer.wrap(encoded));
+                written.put(hash, blob);
+            }
+            index.add(blob);
+        }
+
+        long recordsOffset = position;
+        position += writeFully(channel, ByteBuffer.wrap(save.records.toByteArray()));
+
+        long indexOffset = position;
+        ByteBuffer indexBytes = ByteBuffer.allocate(4 + index.size() * (HASH_BYTES + 20));
+        indexBytes.putInt(index.size());
+        for (Blob blob : index) {
+            indexBytes.put(HexFormat.of().parseHex(blob.hash));
+            indexBytes.putLong(blob.offset).putInt(blob.length).putInt(blob.width).putInt(blob.height);
+        }
+        position += writeFully(channel, indexBytes.flip());
+        position += writeFully(channel, ByteBuffer.allocate(FOOTER_BYTES)
+                .putLong(recordsOffset).putLong(indexOffset).putInt(FOOTER_MAGIC).flip());
+        channel.force(true);
+        live = liveBytes(index, position - recordsOffset);
+        return position;
+    }
+
+    private static long liveBytes(List<Blob> index, long tailBytes) {
+        long bytes = HEADER_BYTES + tailBytes;
+        for (Blob blob : new HashSet<>(index)) {
+            bytes += blob.length;
+        }
+        return bytes;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new EOFException();
+        }
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int bytes = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return bytes;
+    }
+
+    // Images from files are stored as their original encoded bytes; images that only exist in memory as PNG.
+    static byte[] encode(MipMap mipMap) throws IOException {
+        if (mipMap.source != null) return mipMap.source.readAllBytes();
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(mipMap.level(0), "png", png);
+        return png.toByteArray();
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
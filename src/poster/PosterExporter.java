@@ -0,0 +1,245 @@
+package poster;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+class PosterExporter {
+    static final int STRIP_HEIGHT = 256;
+
+    final Rectangle2D page;
+    final double scale;
+    final int width;
+    final int height;
+    Color background = Color.WHITE;
+    // When set, only this part of the page gets the background and the rest is filled with the pasteboard color.
+    Rectangle2D sheet;
+    Color pasteboard;
+    // Renders strips ahead of the writer; null renders each strip on the writing thread when it is asked for.
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    private final List<List<Drawable>> strips = new ArrayList<>();
+
+    PosterExporter(List<? extends Drawable> drawables, Rectangle2D page, double scale) {
+        this.page = page;
+        this.scale = scale;
+        width = (int) Math.ceil(page.getWidth() * scale);
+        height = (int) Math.ceil(page.getHeight() * scale);
+
+        int stripCount = (height + STRIP_HEIGHT - 1) / STRIP_HEIGHT;
+        for (int i = 0; i < stripCount; i++) {
+            strips.add(new ArrayList<>());
+        }
+        for (Drawable drawable : drawables) {
+            Rectangle bounds = drawable.getBounds();
+            if (bounds.x > page.getMaxX() || bounds.x + bounds.width < page.getX()) continue;
+            int first = (int) Math.floor((bounds.y - page.getY()) * scale) / STRIP_HEIGHT;
+            int last = (int) Math.floor((bounds.y + bounds.height - page.getY()) * scale + 1) / STRIP_HEIGHT;
+            for (int strip = Math.max(0, first); strip <= Math.min(stripCount - 1, last); strip++) {
+                strips.get(strip).add(drawable);
+            }
+        }
+    }
+
+    static double scaleForDpi(int dpi) {
+        return dpi / 72.0;
+    }
+
+    int stripCount() {
+        return strips.size();
+    }
+
+    BufferedImage renderStrip(int strip) {
+        int y = strip * STRIP_HEIGHT;
+        int stripHeight = Math.min(STRIP_HEIGHT, height - y);
+        BufferedImage image = new BufferedImage(width, stripHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = image.createGraphics();
+        g2d.setColor(sheet == null ? background : pasteboard);
+        g2d.fillRect(0, 0, width, stripHeight);
+        RenderQuality.HIGH.apply(g2d);
+        g2d.translate(0, -y);
+        g2d.scale(scale, scale);
+        g2d.translate(-page.getX(), -page.getY());
+        if (sheet != null) {
+            g2d.setColor(background);
+            g2d.fill(sheet);
+        }
+        for (Drawable drawable : strips.get(strip)) {
+            drawable.Draw(g2d);
+        }
+        g2d.dispose();
+        return image;
+    }
+
+    void write(File file, String format) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) throw new IOException("No image writer for " + format);
+        ImageWriter writer = writers.next();
+        try {
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(file)) {
+                if (out == null) throw new IOException("Cannot write " + file);
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                writer.write(null, new IIOImage(new StripImage(), null, null), param);
+            }
+        } catch (IOException | RuntimeException ex) {
+            // Strips are written as they are rendered, so a failure leaves a truncated image behind.
+            file.delete();
+            throw ex;
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private class StripImage implements RenderedImage {
+        private final BufferedImage prototype = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+        private final TreeMap<Integer, ForkJoinTask<BufferedImage>> rendering = new TreeMap<>();
+        private final int lookahead = pool == null ? 0 : pool.getParallelism() + 1;
+
+        private synchronized ForkJoinTask<BufferedImage> schedule(int strip) {
+            rendering.headMap(strip).clear();
+            if (pool == null) {
+                return rendering.computeIfAbsent(strip, s -> {
+                    ForkJoinTask<BufferedImage> task = ForkJoinTask.adapt(() -> renderStrip(s));
+                    task.invoke();
+                    return task;
+                });
+            }
+            for (int next = strip; next < Math.min(stripCount(), strip + lookahead); next++) {
+                int toRender = next;
+                rendering.computeIfAbsent(next, s -> pool.submit(() -> renderStrip(toRender)));
+            }
+            return rendering.get(strip);
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            return schedule(tileY).join().getRaster().createTranslatedChild(0, tileY * STRIP_HEIGHT);
+        }
+
+        @Override
+        public Raster getData(Rectangle rect) {
+            return copyData(prototype.getRaster().createCompatibleWritableRaster(rect.x, rect.y, rect.width, rect.height));
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, width, height));
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            if (raster == null) {
+                raster = prototype.getRaster().createCompatibleWritableRaster(width, height);
+            }
+            Rectangle area = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+            if (area.isEmpty()) return raster;
+            for (int strip = area.y / STRIP_HEIGHT; strip <= (area.y + area.height - 1) / STRIP_HEIGHT; strip++) {
+                Raster tile = getTile(0, strip);
+                Rectangle overlap = tile.getBounds().intersection(area);
+                raster.setRect(0, 0, tile.createChild(overlap.x, overlap.y, overlap.width, overlap.height,
+                        overlap.x, overlap.y, null));
+            }
+            return raster;
+        }
+
+        @Override
+        public Vector<RenderedImage> getSources() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            return Image.UndefinedProperty;
+        }
+
+        @Override
+        public String[] getPropertyNames() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return prototype.getColorModel();
+        }
+
+        @Override
+        public SampleModel getSampleModel() {
+            return prototype.getSampleModel().createCompatibleSampleModel(width, STRIP_HEIGHT);
+        }
+
+        @Override
+        public int getWidth() {
+            return width;
+        }
+
+        @Override
+        public int getHeight() {
+            return height;
+        }
+
+        @Override
+        public int getMinX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinY() {
+            return 0;
+        }
+
+        @Override
+        public int getNumXTiles() {
+            return 1;
+        }
+
+        @Override
+        public int getNumYTiles() {
+            return stripCount();
+        }
+
+        @Override
+        public int getMinTileX() {
+            return 0;
+        }
+
+        @Override
+        public int getMinTileY() {
+            return 0;
+        }
+
+        @Override
+        public int getTileWidth() {
+            return width;
+        }
+
+        @Override
+        public int getTileHeight() {
+            return STRIP_HEIGHT;
+        }
+
+        @Override
+        public int getTileGridXOffset() {
+            return 0;
+        }
+
+        @Override
+        public int getTileGridYOffset() {
+            return 0;
+        }
+    }
+}
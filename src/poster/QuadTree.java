@@ -0,0 +1,155 @@
+package poster;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class QuadTree {
+    private static final int MAX_ITEMS = 8;
+    private static final int MIN_SIZE = 16;
+    private static final int INITIAL_SIZE = 1024;
+
+    private Node root = new Node(0, 0, INITIAL_SIZE);
+    private final Map<Drawable, Node> locations = new HashMap<>();
+
+    private static final class Node {
+        final long x, y, size;
+        final ArrayList<Drawable> items = new ArrayList<>();
+        Node[] children;
+
+        Node(long x, long y, long size) {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+        }
+
+        boolean covers(Rectangle r) {
+            return r.x >= x && r.y >= y && r.x + (long) r.width <= x + size && r.y + (long) r.height <= y + size;
+        }
+
+        boolean intersects(Rectangle r) {
+            return r.x <= x + size && r.y <= y + size && r.x + (long) r.width >= x && r.y + (long) r.height >= y;
+        }
+
+        boolean contains(Point p) {
+            return p.x >= x && p.y >= y && p.x < x + size && p.y < y + size;
+        }
+
+        Node childCovering(Rectangle r) {
+            for (Node child : children) {
+                if (child.covers(r)) return child;
+            }
+            return null;
+        }
+
+        void split() {
+            long half = size / 2;
+            children = new Node[] {
+                    new Node(x, y, half), new Node(x + half, y, half),
+                    new Node(x, y + half, half), new Node(x + half, y + half, half)
+            };
+        }
+    }
+
+    int size() {
+        return locations.size();
+    }
+
+    void insert(Drawable drawable) {
+        Rectangle bounds = drawable.getBounds();
+        while (!root.covers(bounds)) {
+            grow(bounds);
+        }
+
+        Node node = root;
+        while (true) {
+            if (node.children == null) {
+                if (node.items.size() < MAX_ITEMS || node.size <= MIN_SIZE) break;
+                split(node);
+            }
+            Node child = node.childCovering(bounds);
+            if (child == null) break;
+            node = child;
+        }
+        node.items.add(drawable);
+        locations.put(drawable, node);
+    }
+
+    void remove(Drawable drawable) {
+        Node node = locations.remove(drawable);
+        if (node != null) {
+            node.items.remove(drawable);
+        }
+    }
+
+    void update(Drawable drawable) {
+        Node node = locations.get(drawable);
+        if (node == null) return;
+        Rectangle bounds = drawable.getBounds();
+        if (node.covers(bounds) && (node.children == null || node.childCovering(bounds) == null)) return;
+        remove(drawable);
+        insert(drawable);
+    }
+
+    void query(Point p, List<Drawable> result) {
+        Node node = root;
+        while (node != null && node.contains(p)) {
+            for (Drawable drawable : node.items) {
+                if (drawable.getBounds().contains(p)) result.add(drawable);
+            }
+            if (node.children == null) break;
+            Node next = null;
+            for (Node child : node.children) {
+                if (child.contains(p)) {
+                    next = child;
+                    break;
+                }
+            }
+            node = next;
+        }
+    }
+
+    void query(Rectangle region, List<Drawable> result) {
+        query(root, region, result);
+    }
+
+    private void query(Node node, Rectangle region, List<Drawable> result) {
+        if (!node.intersects(region)) return;
+        for (Drawable drawable : node.items) {
+            if (drawable.getBounds().intersects(region)) result.add(drawable);
+        }
+        if (node.children != null) {
+            for (Node child : node.children) {
+                query(child, region, result);
+            }
+        }
+    }
+
+    private void split(Node node) {
+        node.split();
+        ArrayList<Drawable> remaining = new ArrayList<>();
+        for (Drawable drawable : node.items) {
+            Node child = node.childCovering(drawable.getBounds());
+            if (child == null) {
+                remaining.add(drawable);
+            } else {
+                child.items.add(drawable);
+                locations.put(drawable, child);
+            }
+        }
+        node.items.clear();
+        node.items.addAll(remaining);
+    }
+
+    private void grow(Rectangle towards) {
+        Node old = root;
+        boolean left = towards.x < old.x;
+        boolean up = towards.y < old.y;
+        Node grown = new Node(left ? old.x - old.size : old.x, up ? old.y - old.size : old.y, old.size * 2);
+        grown.split();
+        grown.children[(up ? 2 : 0) + (left ? 1 : 0)] = old;
+        root = grown;
+    }
+}
@@ -0,0 +1,39 @@
+package poster;
+
+import java.awt.*;
+
+// Rendering hint presets. The preset itself is also stored as a hint under KEY so drawables can read it
+// back from the Graphics2D they are handed (MipMap drops a level when it sees FAST).
+enum RenderQuality {
+    FAST, NORMAL, HIGH;
+
+    static final RenderingHints.Key KEY = new RenderingHints.Key(0x706f7374) {
+        @Override
+        public boolean isCompatibleValue(Object value) {
+            return value instanceof RenderQuality;
+        }
+    };
+
+    void apply(Graphics2D g2d) {
+        g2d.setRenderingHint(KEY, this);
+        switch (this) {
+            case FAST -> {
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_SPEED);
+            }
+            case HIGH -> {
+                g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            }
+            default -> {
+            }
+        }
+    }
+
+    static RenderQuality of(Graphics2D g2d) {
+        Object quality = g2d.getRenderingHint(KEY);
+        return quality instanceof RenderQuality ? (RenderQuality) quality : NORMAL;
+    }
+}
@@ -0,0 +1,52 @@
+package poster;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+
+class ShapeDrawable extends Drawable{
+    Shape originalShape;
+    Color color;
+
+    public ShapeDrawable(Shape shape, Color color) {
+        this.originalShape = shape;
+        this.color = color;
+        this.transform = new AffineTransform();
+    }
+
+    ShapeDrawable(ShapeDrawable original) {
+        super(original);
+        this.originalShape = original.originalShape;
+        this.color = original.color;
+    }
+
+    @Override
+    ShapeDrawable copy() {
+        ShapeDrawable copy = new ShapeDrawable(this);
+        copy.getBounds();
+        return copy;
+    }
+
+    @Override
+    Color proxyColor() {
+        return color;
+    }
+
+    void setColor(Color color) {
+        this.color = color;
+        contentChanged();
+    }
+
+    @Override
+    public void Draw(Graphics2D g2d) {
+        Shape transformed = getTransformedShape();
+        g2d.setColor(color);
+        g2d.fill(transformed);
+        g2d.setColor(Color.BLACK);
+        g2d.draw(transformed);
+    }
+
+    @Override
+    Shape getLocalShape() {
+        return originalShape;
+    }
+}
@@ -0,0 +1,154 @@
+package poster;
+
+import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.text.AttributedString;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Text laid out once into a filled outline. The outline is rebuilt only when the text or its style
+// changes, so painting, bounds and picking are all plain shape operations, also under rotation.
+// Paragraphs break at newlines and, when wrapWidth is positive, at that width.
+class TextDrawable extends Drawable {
+    // Glyph outlines at the origin, shared by every text drawable using the same font and size. Only the
+    // most recently used fonts are kept; a layout that holds on to an evicted entry keeps working with it.
+    static final class Glyphs {
+        static final int MAX_FONTS = Integer.getInteger("poster.glyphCacheFonts", 32);
+        private static final Map<Font, Glyphs> SHARED = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Font, Glyphs> eldest) {
+                return size() > MAX_FONTS;
+            }
+        };
+
+        final Font font;
+        private final ConcurrentHashMap<Integer, Shape> outlines = new ConcurrentHashMap<>();
+
+        private Glyphs(Font font) {
+            this.font = font;
+        }
+
+        static Glyphs of(Font font) {
+            synchronized (SHARED) {
+                return SHARED.computeIfAbsent(font, Glyphs::new);
+            }
+        }
+
+        Shape outline(int glyphCode) {
+            return outlines.computeIfAbsent(glyphCode,
+                    code -> font.createGlyphVector(FRC, new int[]{code}).getGlyphOutline(0));
+        }
+    }
+
+    // Layout happens in page units, independent of the screen, so outlines can be shared and exported.
+    static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+
+    String text;
+    Font font;
+    Color color;
+    float wrapWidth;
+    private Shape outline;
+
+    public TextDrawable(String text, Font font, Color color, float wrapWidth) {
+        this.text = text;
+        this.font = font;
+        this.color = color;
+        this.wrapWidth = wrapWidth;
+        this.transform = new AffineTransform();
+    }
+
+    TextDrawable(TextDrawable original) {
+        super(original);
+        this.text = original.text;
+        this.font = original.font;
+        this.color = original.color;
+        this.wrapWidth = original.wrapWidth;
+        this.outline = original.outline;
+    }
+
+    @Override
+    TextDrawable copy() {
+        TextDrawable copy = new TextDrawable(this);
+        copy.getBounds();
+        return copy;
+    }
+
+    @Override
+    Color proxyColor() {
+        return color;
+    }
+
+    void setColor(Color color) {
+        this.color = color;
+        contentChanged();
+    }
+
+    void setText(String text) {
+        Rectangle oldBounds = getBounds();
+        this.text = text;
+        outline = null;
+        transformChanged(oldBounds);
+    }
+
+    void setStyle(Font font, float wrapWidth) {
+        Rectangle oldBounds = getBounds();
+        this.font = font;
+        this.wrapWidth = wrapWidth;
+        outline = null;
+        transformChanged(oldBounds);
+    }
+
+    @Override
+    public void Draw(Graphics2D g2d) {
+        g2d.setColor(color);
+        g2d.fill(getTransformedShape());
+    }
+
+    @Override
+    Shape getLocalShape() {
+        if (outline == null) outline = layout();
+        return outline;
+    }
+
+    // Line breaks come from TextLayout; the glyphs of each line are then placed from the shared cache
+    // instead of asking the font for a fresh outline every time.
+    private Shape layout() {
+        Glyphs glyphs = Glyphs.of(font);
+        Path2D.Float path = new Path2D.Float();
+        float y = 0;
+        for (String paragraph : text.split("\n", -1)) {
+            if (paragraph.isEmpty()) {
+                y += font.getLineMetrics(" ", FRC).getHeight();
+                continue;
+            }
+            AttributedString attributed = new AttributedString(paragraph);
+            attributed.addAttribute(TextAttribute.FONT, font);
+            LineBreakMeasurer measurer = new LineBreakMeasurer(attributed.getIterator(), FRC);
+            while (measurer.getPosition() < paragraph.length()) {
+                int start = measurer.getPosition();
+                TextLayout line = wrapWidth > 0 ? measurer.nextLayout(wrapWidth) : measurer.nextLayout(Float.MAX_VALUE);
+                int limit = measurer.getPosition();
+                y += line.getAscent();
+
+                char[] chars = paragraph.substring(start, limit).toCharArray();
+                GlyphVector vector = font.layoutGlyphVector(FRC, chars, 0, chars.length,
+                        line.isLeftToRight() ? Font.LAYOUT_LEFT_TO_RIGHT : Font.LAYOUT_RIGHT_TO_LEFT);
+                for (int i = 0; i < vector.getNumGlyphs(); i++) {
+                    Point2D position = vector.getGlyphPosition(i);
+                    path.append(glyphs.outline(vector.getGlyphCode(i)).getPathIterator(
+                            AffineTransform.getTranslateInstance(position.getX(), position.getY() + y)), false);
+                }
+                y += line.getDescent() + line.getLeading();
+            }
+        }
+        return path;
+    }
+}
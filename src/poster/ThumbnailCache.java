@@ -0,0 +1,211 @@
+package poster;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Each save writes a new generation of the pack next to the old ones (name.pack.1, name.pack.2, ...) and
+// switches to it, because the mapped generation cannot be replaced or deleted on Windows. Older
+// generations are deleted once nothing maps them.
+class ThumbnailCache {
+    private static final int MAGIC = 0x50544843;
+    private static final int VERSION = 1;
+    // Keys are stored with a 16-bit byte length; a UTF-8 char takes at most 3 bytes.
+    private static final int MAX_KEY_CHARS = 0xFFFF / 3;
+
+    private final File packFile;
+    private int generation;
+    private final int width;
+    private final int height;
+    private final Map<String, Integer> packedOffsets = new HashMap<>();
+    private MappedByteBuffer pack;
+    private final Map<String, int[]> added = new ConcurrentHashMap<>();
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+
+    ThumbnailCache(File packFile, int width, int height) {
+        this.packFile = packFile;
+        this.width = width;
+        this.height = height;
+        int[] generations = generations();
+        for (int i = generations.length - 1; i >= 0; i--) {
+            try {
+                load(generation(generations[i]));
+                generation = generations[i];
+                break;
+            } catch (IOException ex) {
+                // Falls back to the next older generation.
+            }
+        }
+        deleteOldGenerations();
+    }
+
+    // Generation 0 is the unnumbered pack file written by earlier versions.
+    private File generation(int generation) {
+        return generation == 0 ? packFile : new File(packFile.getPath() + "." + generation);
+    }
+
+    private int[] generations() {
+        String prefix = packFile.getName() + ".";
+        String[] names = packFile.getAbsoluteFile().getParentFile().list();
+        if (names == null) return new int[0];
+        return Arrays.stream(names)
+                .map(name -> name.equals(packFile.getName()) ? "0" : name.startsWith(prefix) ? name.substring(prefix.length()) : "")
+                .filter(number -> number.matches("[0-9]{1,9}"))
+                .mapToInt(Integer::parseInt)
+                .sorted()
+                .toArray();
+    }
+
+    private void deleteOldGenerations() {
+        for (int old : generations()) {
+            if (old != generation) generation(old).delete();
+        }
+    }
+
+    private static String key(File file) {
+        String key = file.getAbsolutePath() + '|' + file.length() + '|' + file.lastModified();
+        if (key.length() <= MAX_KEY_CHARS) return key;
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return "sha256|" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    // Switches to the pack only once all of it has been read; a pack of another size or format counts as corrupt.
+    private void load(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getInt() != width || buffer.getInt() != height) {
+                throw new IOException("Not a thumbnail pack for " + width + "x" + height + ": " + file);
+            }
+            int count = buffer.getInt();
+            int pixelBytes = width * height * 4;
+            Map<String, Integer> offsets = new HashMap<>();
+            for (int i = 0; i < count; i++) {
+                byte[] keyBytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(keyBytes);
+                int offset = buffer.getInt();
+                if (offset < 0 || (long) offset + pixelBytes > buffer.capacity()) throw new IOException("Corrupt thumbnail pack");
+                offsets.put(new String(keyBytes, StandardCharsets.UTF_8), offset);
+            }
+            packedOffsets.clear();
+            packedOffsets.putAll(offsets);
+            pack = buffer;
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Corrupt thumbnail pack", ex);
+        }
+    }
+
+    BufferedImage get(File file) {
+        String key = key(file);
+        int[] pixels = added.get(key);
+        Integer offset = packedOffsets.get(key);
+        if (pixels == null && offset == null) return null;
+        used.add(key);
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] target = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        if (pixels != null) {
+            System.arraycopy(pixels, 0, target, 0, target.length);
+        } else {
+            IntBuffer packed = pack.duplicate().position(offset).slice().asIntBuffer();
+            packed.get(target);
+        }
+        return image;
+    }
+
+    void put(File file, BufferedImage thumbnail) {
+        if (thumbnail.getWidth() != width || thumbnail.getHeight() != height) return;
+        String key = key(file);
+        added.put(key, thumbnail.getRGB(0, 0, width, height, null, 0, width));
+        used.add(key);
+    }
+
+    boolean isDirty() {
+        return !added.isEmpty() || !used.containsAll(packedOffsets.keySet());
+    }
+
+    synchronized void save() throws IOException {
+        if (!isDirty()) return;
+        Map<String, byte[]> keys = new HashMap<>();
+        for (String key : used) {
+            keys.put(key, key.getBytes(StandardCharsets.UTF_8));
+        }
+
+        int headerBytes = 5 * 4;
+        for (byte[] keyBytes : keys.values()) {
+            headerBytes += 2 + keyBytes.length + 4;
+        }
+        int pixelBytes = width * height * 4;
+
+        File temp = new File(packFile.getPath() + ".tmp");
+        try (RandomAccessFile out = new RandomAccessFile(temp, "rw");
+             FileChannel channel = out.getChannel()) {
+            out.setLength(0);
+            DataOutputStream header = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            header.writeInt(width);
+            header.writeInt(height);
+            header.writeInt(keys.size());
+            int offset = headerBytes;
+            for (Map.Entry<String, byte[]> entry : keys.entrySet()) {
+                header.writeShort(entry.getValue().length);
+                header.write(entry.getValue());
+                header.writeInt(offset);
+                offset += pixelBytes;
+            }
+            header.flush();
+
+            ByteBuffer pixels = ByteBuffer.allocate(pixelBytes);
+            for (String key : keys.keySet()) {
+                pixels.clear();
+                int[] fresh = added.get(key);
+                if (fresh != null) {
+                    pixels.asIntBuffer().put(fresh);
+                } else {
+                    int packedOffset = packedOffsets.get(key);
+                    pixels.put(pack.duplicate().position(packedOffset).limit(packedOffset + pixelBytes));
+                }
+                pixels.position(0).limit(pixelBytes);
+                while (pixels.hasRemaining()) {
+                    channel.write(pixels);
+                }
+            }
+        }
+
+        // The new generation is newer than any left on disk, so the move replaces nothing that is mapped and
+        // the next start tries it first.
+        int[] existing = generations();
+        int next = Math.max(generation, existing.length == 0 ? 0 : existing[existing.length - 1]) + 1;
+        Files.move(temp.toPath(), generation(next).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        load(generation(next));
+        generation = next;
+        added.keySet().removeAll(keys.keySet());
+        deleteOldGenerations();
+    }
+}
@@ -0,0 +1,52 @@
+package poster;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+class Thumbnails {
+    static final int SIZE = 80;
+
+    private Thumbnails() {
+    }
+
+    static BufferedImage read(File file, int width, int height) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            Instrumentation.DecodeEvent event = new Instrumentation.DecodeEvent();
+            long start = System.nanoTime();
+            event.begin();
+            try {
+                reader.setInput(in, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int xStep = Math.max(1, reader.getWidth(0) / width);
+                int yStep = Math.max(1, reader.getHeight(0) / height);
+                param.setSourceSubsampling(xStep, yStep, 0, 0);
+                BufferedImage decoded = reader.read(0, param);
+                Instrumentation.decodeFinished(start, file, Math.max(xStep, yStep), decoded.getWidth(), decoded.getHeight(), event);
+                return scale(decoded, width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    static BufferedImage scale(BufferedImage source, int width, int height) {
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scaled.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(source, 0, 0, width, height, null);
+        g2d.dispose();
+        return scaled;
+    }
+}
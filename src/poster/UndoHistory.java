@@ -0,0 +1,413 @@
+package poster;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Undo/redo journal of small commands. Edits keep references to the drawables they touch (removed images
+// stay shared through their MipMap), never copies of the scene, and the oldest edits are dropped once the
+// estimated size goes over the budget.
+class UndoHistory {
+    static final long DEFAULT_BUDGET = Long.getLong("poster.undoBudgetKB", 1024) << 10;
+
+    static final int REFERENCE_BYTES = 8;
+    static final int EDIT_BYTES = 32;
+
+    final long budget;
+    private final ArrayDeque<Edit> undoStack = new ArrayDeque<>();
+    private final ArrayDeque<Edit> redoStack = new ArrayDeque<>();
+    private long bytes;
+    private boolean applying;
+    private boolean mergeable;
+    private CompoundEdit compound;
+    private int compoundDepth;
+
+    UndoHistory() {
+        this(DEFAULT_BUDGET);
+    }
+
+    UndoHistory(long budget) {
+        this.budget = budget;
+    }
+
+    abstract static class Edit {
+        abstract void undo(CanvasPanel canvas);
+
+        abstract void redo(CanvasPanel canvas);
+
+        abstract long size();
+
+        // Folds the following edit into this one; returns false if they must stay separate entries.
+        boolean merge(Edit next) {
+            return false;
+        }
+    }
+
+    static class AddEdit extends Edit {
+        final Drawable drawable;
+        final int zIndex;
+
+        AddEdit(Drawable drawable, int zIndex) {
+            this.drawable = drawable;
+            this.zIndex = zIndex;
+        }
+
+        @Override
+        void undo(CanvasPanel canvas) {
+            canvas.removeDrawable(drawable);
+        }
+
+        @Override
+        void redo(CanvasPanel canvas) {
+            canvas.addDrawable(drawable, zIndex);
+        }
+
+        @Override
+        long size() {
+            return EDIT_BYTES + REFERENCE_BYTES + 4;
+        }
+    }
+
+    static class RemoveEdit extends AddEdit {
+        RemoveEdit(Drawable drawable, int zIndex) {
+            super(drawable, zIndex);
+        }
+
+        @Override
+        void undo(CanvasPanel canvas) {
+            super.redo(canvas);
+        }
+
+        @Override
+        void redo(CanvasPanel canvas) {
+            super.undo(canvas);
+        }
+    }
+
+    static class TransformEdit extends Edit {
+        final Drawable[] targets;
+        final double[] matrix = new double[6];
+        final boolean nudge;
+
+        TransformEdit(Drawable[] targets, AffineTransform delta, boolean nudge) {
+            this.targets = targets;
+            this.nudge = nudge;
+            delta.getMatrix(matrix);
+        }
+
+        @Override
+        void undo(CanvasPanel canvas) {
+            try {
+                canvas.transformDrawables(targets, new AffineTransform(matrix).createInverse());
+            } catch (NoninvertibleTransformException e) {
+                // Drags and nudges never collapse a drawable, so the delta is always invertible.
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        void redo(CanvasPanel canvas) {
+            canvas.transformDrawables(targets, new AffineTransform(matrix));
+        }
+
+        @Override
+        long size() {
+            return EDIT_BYTES + 6 * 8 + (long) targets.length * REFERENCE_BYTES;
+        }
+
+        @Override
+        boolean merge(Edit next) {
+            if (!nudge || !(next instanceof TransformEdit)) return false;
+            TransformEdit other = (TransformEdit) next;
+            if (!other.nudge || !Arrays.equals(targets, other.targets)) return false;
+            AffineTransform combined = new AffineTransform(matrix);
+            combined.preConcatenate(new AffineTransform(other.matrix));
+            combined.getMatrix(matrix);
+            return true;
+        }
+    }
+
+    static class ZOrderEdit extends Edit {
+        final Drawable[] targets;
+        final int[] from;
+        final int[] to;
+
+        // Indices are in ascending order of the respective side so the targets can be reinserted in one pass.
+        ZOrderEdit(Drawable[] targets, int[] from, int[] to) {
+            this.targets = targets;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        void undo(CanvasPanel canvas) {
+            canvas.placeDrawables(targets, from);
+        }
+
+        @Override
+        void redo(CanvasPanel canvas) {
+            canvas.placeDrawables(targets, to);
+        }
+
+        @Override
+        long size() {
+            return EDIT_BYTES + (long) targets.length * (REFERENCE_BYTES + 8);
+        }
+    }
+
+    // Shapes and text are the drawables with a fill color.
+    static class ColorEdit extends Edit {
+        final Drawable[] targets;
+        final Color[] before;
+        final Color after;
+
+        ColorEdit(Drawable[] targets, Color[] before, Color after) {
+            this.targets = targets;
+            this.before = before;
+            this.after = after;
+        }
+
+        // Returns null for drawables without a fill color.
+        static Color colorOf(Drawable drawable) {
+            if (drawable instanceof ShapeDrawable) return ((ShapeDrawable) drawable).color;
+            if (drawable instanceof TextDrawable) return ((TextDrawable) drawable).color;
+            return null;
+        }
+
+        static void setColor(Drawable drawable, Color color) {
+            if (drawable instanceof TextDrawable) {
+                ((TextDrawable) drawable).setColor(color);
+            } else {
+                ((ShapeDrawable) drawable).setColor(color);
+            }
+        }
+
+        @Override
+        void undo(CanvasPanel canvas) {
+            for (int i = 0; i < targets.length; i++) {
+                setColor(targets[i], before[i]);
+            }
+        }
+
+        @Override
+        void redo(CanvasPanel canvas) {
+            for (Drawable target : targets) {
+                setColor(target, after);
+            }
+        }
+
+        @Override
+        long size() {
+            return EDIT_BYTES + REFERENCE_BYTES + (long) targets.length * 2 * REFERENCE_BYTES;
+        }
+    }
+
+    static class TextEdit extends Edit {
+        final TextDrawable target;
+        final String before;
+        final String after;
+
+        TextEdit(TextDrawable target, String before, String after) {
+            this.target = target;
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        void undo(CanvasPanel canvas) {
+            target.setText(before);
+        }
+
+        @Override
+        void redo(CanvasPanel canvas) {
+            target.setText(after);
+        }
+
+        @Override
+        long size() {
+            return EDIT_BYTES + REFERENCE_BYTES + 2L * (before.length() + after.length());
+        }
+    }
+
+    static class StyleEdit extends Edit {
+        final TextDrawable target;
+        final Font beforeFont;
+        final float beforeWrapWidth;
+        final Font afterFont;
+        final float afterWrapWidth;
+
+        StyleEdit(TextDrawable target, Font beforeFont, float beforeWrapWidth, Font afterFont, float afterWrapWidth) {
+            this.target = target;
+            this.beforeFont = beforeFont;
+            this.beforeWrapWidth = beforeWrapWidth;
+            this.afterFont = afterFont;
+            this.afterWrapWidth = afterWrapWidth;
+        }
+
+        @Override
+        void undo(CanvasPanel canvas) {
+            target.setStyle(beforeFont, beforeWrapWidth);
+        }
+
+        @Override
+        void redo(CanvasPanel canvas) {
+            target.setStyle(afterFont, afterWrapWidth);
+        }
+
+        @Override
+        long size() {
+            return EDIT_BYTES + 3 * REFERENCE_BYTES + 8;
+        }
+    }
+
+    static class PageEdit extends Edit {
+        final Rectangle before;
+        final Rectangle after;
+
+        PageEdit(Rectangle before, Rectangle after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        void undo(CanvasPanel canvas) {
+            canvas.setPage(before);
+        }
+
+        @Override
+        void redo(CanvasPanel canvas) {
+            canvas.setPage(after);
+        }
+
+        @Override
+        long size() {
+            return EDIT_BYTES + 2 * REFERENCE_BYTES + 32;
+        }
+    }
+
+    static class CompoundEdit extends Edit {
+        final List<Edit> edits = new ArrayList<>();
+        long size = EDIT_BYTES;
+
+        @Override
+        void undo(CanvasPanel canvas) {
+            for (int i = edits.size() - 1; i >= 0; i--) {
+                edits.get(i).undo(canvas);
+            }
+        }
+
+        @Override
+        void redo(CanvasPanel canvas) {
+            for (Edit edit : edits) {
+                edit.redo(canvas);
+            }
+        }
+
+        @Override
+        long size() {
+            return size;
+        }
+    }
+
+    void record(Edit edit) {
+        if (applying) return;
+        if (compound != null) {
+            compound.edits.add(edit);
+            compound.size += edit.size();
+            return;
+        }
+        for (Edit dropped : redoStack) {
+            bytes -= dropped.size();
+        }
+        redoStack.clear();
+        Edit last = mergeable ? undoStack.peekLast() : null;
+        mergeable = true;
+        if (last != null) {
+            long before = last.size();
+            if (last.merge(edit)) {
+                bytes += last.size() - before;
+                return;
+            }
+        }
+        undoStack.addLast(edit);
+        bytes += edit.size();
+        trim();
+    }
+
+    // Edits recorded between begin and end undo as one step; calls nest.
+    void beginCompound() {
+        if (compoundDepth++ == 0) compound = new CompoundEdit();
+    }
+
+    void endCompound() {
+        if (--compoundDepth > 0) return;
+        CompoundEdit finished = compound;
+        compound = null;
+        if (finished.edits.size() == 1) {
+            record(finished.edits.get(0));
+        } else if (!finished.edits.isEmpty()) {
+            record(finished);
+        }
+    }
+
+    boolean undo(CanvasPanel canvas) {
+        Edit edit = undoStack.pollLast();
+        if (edit == null) return false;
+        apply(edit, canvas, true);
+        mergeable = false;
+        redoStack.addLast(edit);
+        return true;
+    }
+
+    boolean redo(CanvasPanel canvas) {
+        Edit edit = redoStack.pollLast();
+        if (edit == null) return false;
+        apply(edit, canvas, false);
+        mergeable = false;
+        undoStack.addLast(edit);
+        return true;
+    }
+
+    private void apply(Edit edit, CanvasPanel canvas, boolean undo) {
+        applying = true;
+        try {
+            if (undo) {
+                edit.undo(canvas);
+            } else {
+                edit.redo(canvas);
+            }
+        } finally {
+            applying = false;
+        }
+    }
+
+    // Redo entries count against the budget too but are only dropped by the next recorded edit.
+    private void trim() {
+        while (bytes > budget && undoStack.size() > 1) {
+            bytes -= undoStack.pollFirst().size();
+        }
+    }
+
+    void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        bytes = 0;
+        mergeable = false;
+    }
+
+    boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    long bytes() {
+        return bytes;
+    }
+}
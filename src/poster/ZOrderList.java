@@ -0,0 +1,269 @@
+package poster;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+class ZOrderList extends AbstractList<Drawable> {
+    private static final class Node {
+        final Drawable value;
+        final int priority;
+        Node left, right, parent;
+        int size = 1;
+
+        Node(Drawable value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+
+    private Node root;
+    private final Map<Drawable, Node> nodes = new HashMap<>();
+    private final Random random = new Random();
+    private Node splitLeft, splitRight;
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static Node update(Node node) {
+        node.size = 1 + size(node.left) + size(node.right);
+        if (node.left != null) node.left.parent = node;
+        if (node.right != null) node.right.parent = node;
+        return node;
+    }
+
+    private static Node merge(Node left, Node right) {
+        if (left == null) return right;
+        if (right == null) return left;
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            return update(left);
+        }
+        right.left = merge(left, right.left);
+        return update(right);
+    }
+
+    private void split(Node node, int count) {
+        if (node == null) {
+            splitLeft = splitRight = null;
+        } else if (size(node.left) < count) {
+            split(node.right, count - size(node.left) - 1);
+            node.right = splitLeft;
+            splitLeft = update(node);
+        } else {
+            split(node.left, count);
+            node.left = splitRight;
+            splitRight = update(node);
+        }
+    }
+
+    private void setRoot(Node node) {
+        root = node;
+        if (root != null) root.parent = null;
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return nodes.containsKey(o);
+    }
+
+    private Node nodeAt(int index) {
+        Node node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+    }
+
+    @Override
+    public Drawable get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        return nodeAt(index).value;
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        Node node = nodes.get(o);
+        if (node == null) return -1;
+        int index = size(node.left);
+        while (node.parent != null) {
+            if (node.parent.right == node) {
+                index += size(node.parent.left) + 1;
+            }
+            node = node.parent;
+        }
+        return index;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    @Override
+    public void add(int index, Drawable drawable) {
+        if (index < 0 || index > size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        if (nodes.containsKey(drawable)) throw new IllegalArgumentException("Drawable is already in the list");
+        Node node = new Node(drawable, random.nextInt());
+        nodes.put(drawable, node);
+        split(root, index);
+        Node right = splitRight;
+        setRoot(merge(merge(splitLeft, node), right));
+        modCount++;
+    }
+
+    @Override
+    public Drawable remove(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        split(root, index);
+        Node left = splitLeft;
+        split(splitRight, 1);
+        Node removed = splitLeft;
+        setRoot(merge(left, splitRight));
+        nodes.remove(removed.value);
+        modCount++;
+        return removed.value;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int index = indexOf(o);
+        if (index < 0) return false;
+        remove(index);
+        return true;
+    }
+
+    @Override
+    public Drawable set(int index, Drawable drawable) {
+        Drawable previous = remove(index);
+        add(index, drawable);
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+        nodes.clear();
+        modCount++;
+    }
+
+    boolean moveBy(Drawable drawable, int offset) {
+        int index = indexOf(drawable);
+        if (index < 0) return false;
+        int target = (int) Math.max(0, Math.min(size() - 1L, (long) index + offset));
+        if (target == index) return false;
+        remove(index);
+        add(target, drawable);
+        return true;
+    }
+
+    boolean moveToFront(Drawable drawable) {
+        return moveBy(drawable, size());
+    }
+
+    boolean moveToBack(Drawable drawable) {
+        return moveBy(drawable, -size());
+    }
+
+    // Moves every listed drawable by offset places relative to the drawables that are not listed,
+    // keeping the relative order of the moved ones. A drawable listed twice moves once.
+    boolean moveAllBy(Collection<? extends Drawable> drawables, int offset) {
+        List<int[]> ranks = new ArrayList<>();
+        for (Drawable drawable : new HashSet<>(drawables)) {
+            int index = indexOf(drawable);
+            if (index >= 0) ranks.add(new int[] {index});
+        }
+        if (ranks.isEmpty()) return false;
+        ranks.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+        List<Drawable> moved = new ArrayList<>(ranks.size());
+        for (int[] rank : ranks) {
+            moved.add(get(rank[0]));
+        }
+        for (int i = ranks.size() - 1; i >= 0; i--) {
+            remove(ranks.get(i)[0]);
+        }
+
+        int remaining = size();
+        boolean changed = false;
+        for (int i = 0; i < moved.size(); i++) {
+            int before = ranks.get(i)[0] - i;
+            int target = (int) Math.max(0, Math.min(remaining, (long) before + offset));
+            changed |= target != before;
+            add(target + i, moved.get(i));
+        }
+        return changed;
+    }
+
+    boolean moveAllToFront(Collection<? extends Drawable> drawables) {
+        return moveAllBy(drawables, size());
+    }
+
+    boolean moveAllToBack(Collection<? extends Drawable> drawables) {
+        return moveAllBy(drawables, -size());
+    }
+
+    @Override
+    public Iterator<Drawable> iterator() {
+        return iteratorFrom(0);
+    }
+
+    Iterator<Drawable> iteratorFrom(int index) {
+        Node start = index >= 0 && index < size() ? nodeAt(index) : null;
+        return new Iterator<>() {
+            private Node next = start;
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Drawable next() {
+                if (next == null) throw new NoSuchElementException();
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                Node current = next;
+                if (current.right != null) {
+                    next = leftmost(current.right);
+                } else {
+                    Node child = current;
+                    next = current.parent;
+                    while (next != null && next.right == child) {
+                        child = next;
+                        next = next.parent;
+                    }
+                }
+                return current.value;
+            }
+        };
+    }
+
+    private static Node leftmost(Node node) {
+        while (node.left != null) {
+            node = node.left;
+        }
+        return node;
+    }
+}
@@ -0,0 +1,217 @@
+package poster;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AutosaveTest {
+    @TempDir
+    File dir;
+
+    private final ImagePool pool = new ImagePool(16L << 20);
+    private final Random random = new Random(17);
+    private File journal;
+    private CanvasPanel canvas;
+    private Autosave autosave;
+
+    @BeforeEach
+    void startJournal() {
+        journal = new File(dir, "autosave.journal");
+        canvas = new CanvasPanel(null);
+        canvas.setSize(800, 600);
+        autosave = new Autosave(journal, canvas);
+        canvas.autosave = autosave;
+        // reset writes the journal without the timer, so only the test decides when to checkpoint.
+        autosave.reset();
+    }
+
+    @AfterEach
+    void closeJournal() {
+        autosave.close();
+    }
+
+    private void edit() {
+        for (int i = 0; i < 5; i++) {
+            Shape shape = random.nextBoolean() ? new Rectangle2D.Double(random.nextInt(700), random.nextInt(500), 20, 30)
+                    : new Ellipse2D.Double(random.nextInt(700), random.nextInt(500), 40, 10);
+            canvas.addDrawable(new ShapeDrawable(shape, new Color(random.nextInt())),
+                    random.nextInt(canvas.drawableObjects.size() + 1));
+        }
+        List<Drawable> objects = canvas.drawableObjects;
+        canvas.setSelection(List.of(objects.get(random.nextInt(objects.size())), objects.get(random.nextInt(objects.size()))));
+        canvas.transformSelection(AffineTransform.getRotateInstance(0.3, 100, 100));
+        canvas.moveSelectionLayer(random.nextInt(5) - 2);
+        canvas.removeDrawable(canvas.drawableObjects.get(random.nextInt(canvas.drawableObjects.size())));
+    }
+
+    private static void assertSameScene(List<Drawable> expected, List<Drawable> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getClass(), actual.get(i).getClass());
+            assertEquals(expected.get(i).getBounds(), actual.get(i).getBounds());
+            assertEquals(((ShapeDrawable) expected.get(i)).color, ((ShapeDrawable) actual.get(i)).color);
+        }
+    }
+
+    @Test
+    void replaysEveryCheckpoint() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            edit();
+            autosave.checkpoint();
+        }
+        autosave.flush();
+        assertSameScene(canvas.snapshot(), Autosave.recover(journal, pool).drawables);
+    }
+
+    @Test
+    void stopsAtATornOrCorruptFrame() throws Exception {
+        List<Long> lengths = new ArrayList<>();
+        List<List<Drawable>> scenes = new ArrayList<>();
+        for (int round = 0; round < 10; round++) {
+            edit();
+            autosave.checkpoint();
+            autosave.flush();
+            lengths.add(journal.length());
+            scenes.add(canvas.snapshot());
+        }
+        byte[] complete = Files.readAllBytes(journal.toPath());
+
+        for (int frame = 1; frame < lengths.size(); frame++) {
+            long start = lengths.get(frame - 1);
+            long end = lengths.get(frame);
+            for (long cut : new long[]{start + 1, start + 8, (start + end) / 2, end - 1}) {
+                File torn = new File(dir, "torn.journal");
+                Files.write(torn.toPath(), complete);
+                try (RandomAccessFile out = new RandomAccessFile(torn, "rw")) {
+                    out.setLength(cut);
+                }
+                assertSameScene(scenes.get(frame - 1), Autosave.recover(torn, pool).drawables);
+            }
+
+            // A frame whose payload does not match its checksum ends the replay just the same.
+            File corrupt = new File(dir, "corrupt.journal");
+            byte[] bytes = complete.clone();
+            bytes[(int) (end - 1)] ^= 1;
+            Files.write(corrupt.toPath(), bytes);
+            assertSameScene(scenes.get(frame - 1), Autosave.recover(corrupt, pool).drawables);
+        }
+    }
+
+    @Test
+    void journalsThePage() throws Exception {
+        autosave.flush();
+        assertEquals(CanvasPanel.DEFAULT_PAGE, Autosave.recover(journal, pool).page);
+
+        Rectangle page = new Rectangle(0, 0, 5000, 3000);
+        canvas.resizePage(page);
+        autosave.checkpoint();
+        autosave.flush();
+        assertEquals(page, Autosave.recover(journal, pool).page);
+
+        // A fresh journal starts from the current page, and undoing the resize is journaled like any edit.
+        autosave.reset();
+        autosave.flush();
+        assertEquals(page, Autosave.recover(journal, pool).page);
+        canvas.undo();
+        autosave.checkpoint();
+        autosave.flush();
+        assertEquals(CanvasPanel.DEFAULT_PAGE, Autosave.recover(journal, pool).page);
+    }
+
+    @Test
+    void rejectsJournalsOfANewerVersion() throws IOException {
+        File newer = new File(dir, "newer.journal");
+        Files.write(newer.toPath(), ByteBuffer.allocate(16).putInt(0x50534A4E).putInt(99).array());
+        assertThrows(IOException.class, () -> Autosave.recover(newer, pool));
+    }
+
+    @Test
+    void setsAJournalAside() throws Exception {
+        edit();
+        autosave.checkpoint();
+        autosave.flush();
+        byte[] bytes = Files.readAllBytes(journal.toPath());
+
+        File aside = Autosave.setAside(journal);
+        assertFalse(journal.exists());
+        assertArrayEquals(bytes, Files.readAllBytes(aside.toPath()));
+        assertSameScene(canvas.snapshot(), Autosave.recover(aside, pool).drawables);
+    }
+
+    private static MipMap noise(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                image.setRGB(x, y, (x * 31 + y * 17 + size) * 0x9E3779B1);
+            }
+        }
+        return new MipMap(image);
+    }
+
+    // Opens a poster holding a large and a small image, removes the large one, and saves until the poster
+    // file is rewritten without it, which moves the small image to another offset.
+    private File rewritePoster() throws Exception {
+        File poster = new File(dir, "images.poster");
+        new PosterDocument(poster).save(List.of(new ImageDrawable(noise(200), 0, 0), new ImageDrawable(noise(20), 300, 0)),
+                CanvasPanel.DEFAULT_PAGE);
+        PosterDocument.Loaded loaded = PosterDocument.load(poster, pool);
+        canvas.replaceDrawables(loaded.drawables, loaded.page);
+        autosave.reset();
+        canvas.removeDrawable(canvas.drawableObjects.get(0));
+        autosave.checkpoint();
+        autosave.flush();
+
+        long before = poster.length();
+        loaded.document.save(canvas.snapshot(), canvas.getPageBounds());
+        loaded.document.save(canvas.snapshot(), canvas.getPageBounds());
+        assertTrue(poster.length() < before, "the second save rewrote the poster");
+        return poster;
+    }
+
+    @Test
+    void findsImagesThatASaveMovedWithinThePoster() throws Exception {
+        rewritePoster();
+
+        // A new session starts with an empty pool, so nothing but the journal and the poster can supply the image.
+        Autosave.Recovered recovered = Autosave.recover(journal, new ImagePool(16L << 20));
+        assertEquals(List.of(), recovered.missing);
+        assertEquals(1, recovered.drawables.size());
+        ImageDrawable image = (ImageDrawable) recovered.drawables.get(0);
+        assertEquals(canvas.drawableObjects.get(0).getBounds(), image.getBounds());
+        assertArrayEquals(PosterDocument.encode(noise(20)), image.mipMap.source.readAllBytes());
+    }
+
+    @Test
+    void reportsImagesThatAreGone() throws Exception {
+        File poster = rewritePoster();
+
+        // Other bytes where the image used to be are no substitute for it.
+        byte[] garbage = new byte[1 << 20];
+        new Random(3).nextBytes(garbage);
+        Files.write(poster.toPath(), garbage);
+        Autosave.Recovered recovered = Autosave.recover(journal, new ImagePool(16L << 20));
+        assertEquals(List.of(), recovered.drawables);
+        assertEquals(1, recovered.missing.size());
+        assertTrue(recovered.missing.get(0).startsWith(poster.getPath()));
+
+        assertTrue(poster.delete());
+        assertEquals(1, Autosave.recover(journal, new ImagePool(16L << 20)).missing.size());
+    }
+}
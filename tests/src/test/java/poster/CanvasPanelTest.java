@@ -0,0 +1,136 @@
+package poster;
+
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CanvasPanelTest {
+    private static MouseEvent mouse(Component source, int id, int x, int y) {
+        return new MouseEvent(source, id, System.currentTimeMillis(), InputEvent.BUTTON1_DOWN_MASK, x, y, 1, false,
+                MouseEvent.BUTTON1);
+    }
+
+    // Paints only the given screen region, as a repaint of a dirty region does.
+    private static BufferedImage paint(CanvasPanel canvas, Rectangle clip) {
+        BufferedImage frame = new BufferedImage(canvas.getWidth(), canvas.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = frame.createGraphics();
+        g2d.setClip(clip);
+        canvas.paint(g2d);
+        g2d.dispose();
+        return frame;
+    }
+
+    // Waits for the drag timer to apply the last mouse position.
+    private static void awaitDrag(CanvasPanel canvas) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        boolean[] pending = {true};
+        while (pending[0]) {
+            assertTrue(System.nanoTime() < deadline, "the drag was never applied");
+            Thread.sleep(10);
+            SwingUtilities.invokeAndWait(() -> pending[0] = canvas.pendingDrag != null);
+        }
+    }
+
+    @Test
+    void paintsTheSelectionWhileItIsDraggedOutOfItsIndexNode() throws Exception {
+        CanvasPanel[] holder = new CanvasPanel[1];
+        ShapeDrawable[] dragged = new ShapeDrawable[1];
+        SwingUtilities.invokeAndWait(() -> {
+            CanvasPanel canvas = new CanvasPanel(null);
+            canvas.setSize(1000, 700);
+            for (int i = 0; i < 400; i++) {
+                Rectangle2D.Double square = new Rectangle2D.Double(i % 40 * 25, 300 + i / 40 * 25, 5, 5);
+                canvas.addDrawable(new ShapeDrawable(square, Color.BLUE));
+            }
+            dragged[0] = new ShapeDrawable(new Rectangle2D.Double(20, 60, 40, 40), Color.RED);
+            canvas.addDrawable(dragged[0]);
+            holder[0] = canvas;
+        });
+        CanvasPanel canvas = holder[0];
+
+        SwingUtilities.invokeAndWait(() -> {
+            for (MouseListener listener : canvas.getMouseListeners()) {
+                listener.mousePressed(mouse(canvas, MouseEvent.MOUSE_PRESSED, 30, 70));
+            }
+        });
+        awaitDrag(canvas);
+        SwingUtilities.invokeAndWait(() -> {
+            for (MouseMotionListener listener : canvas.getMouseMotionListeners()) {
+                listener.mouseDragged(mouse(canvas, MouseEvent.MOUSE_DRAGGED, 730, 70));
+            }
+        });
+        awaitDrag(canvas);
+
+        BufferedImage[] frame = new BufferedImage[1];
+        SwingUtilities.invokeAndWait(() -> frame[0] = paint(canvas, new Rectangle(700, 40, 80, 80)));
+        assertEquals(new Rectangle(720, 60, 40, 40), dragged[0].getBounds());
+        assertEquals(Color.RED.getRGB(), frame[0].getRGB(725, 90), "the dragged rectangle is painted where it is now");
+        SwingUtilities.invokeAndWait(() -> frame[0] = paint(canvas, new Rectangle(0, 40, 80, 80)));
+        assertEquals(Color.WHITE.getRGB(), frame[0].getRGB(25, 90), "and not where it was");
+
+        SwingUtilities.invokeAndWait(() -> {
+            for (MouseListener listener : canvas.getMouseListeners()) {
+                listener.mouseReleased(mouse(canvas, MouseEvent.MOUSE_RELEASED, 730, 70));
+            }
+            frame[0] = paint(canvas, new Rectangle(0, 0, canvas.getWidth(), canvas.getHeight()));
+        });
+        assertEquals(Color.RED.getRGB(), frame[0].getRGB(725, 90));
+        assertEquals(Color.WHITE.getRGB(), frame[0].getRGB(25, 90));
+    }
+
+    @Test
+    void fillsShapesAndTextUndoably() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            CanvasPanel canvas = new CanvasPanel(null);
+            ShapeDrawable shape = new ShapeDrawable(new Rectangle2D.Double(0, 0, 10, 10), Color.RED);
+            TextDrawable text = new TextDrawable("text", CanvasPanel.TEXT_FONT, Color.BLACK, 0);
+            canvas.addDrawable(shape);
+            canvas.addDrawable(text);
+            canvas.setSelection(List.of(shape, text));
+
+            canvas.fillSelection(Color.GREEN);
+            assertEquals(Color.GREEN, shape.color);
+            assertEquals(Color.GREEN, text.color);
+            canvas.undo();
+            assertEquals(Color.RED, shape.color);
+            assertEquals(Color.BLACK, text.color);
+            canvas.redo();
+            assertEquals(Color.GREEN, text.color);
+        });
+    }
+
+    @Test
+    void stylesTextUndoably() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            CanvasPanel canvas = new CanvasPanel(null);
+            TextDrawable text = new TextDrawable("several words that wrap", CanvasPanel.TEXT_FONT, Color.BLACK, 0);
+            canvas.addDrawable(text);
+            Rectangle unwrapped = new Rectangle(text.getBounds());
+
+            Font smaller = CanvasPanel.TEXT_FONT.deriveFont(24f);
+            canvas.styleText(text, smaller, 100);
+            assertEquals(smaller, text.font);
+            assertEquals(100, text.wrapWidth);
+            assertTrue(text.getBounds().height > unwrapped.height / 2, "the wrapped text has several lines");
+            assertTrue(text.getBounds().width < unwrapped.width);
+
+            canvas.undo();
+            assertEquals(CanvasPanel.TEXT_FONT, text.font);
+            assertEquals(0, text.wrapWidth);
+            assertEquals(unwrapped, text.getBounds());
+            canvas.redo();
+            assertEquals(smaller, text.font);
+        });
+    }
+}
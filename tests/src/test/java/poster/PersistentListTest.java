@@ -0,0 +1,88 @@
+package poster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentListTest {
+    private static void assertSameList(List<Integer> expected, PersistentList<Integer> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), actual.get(i));
+        }
+        assertEquals(expected, new ArrayList<>(actual));
+    }
+
+    @Test
+    void agreesWithArrayListAndKeepsEveryVersion() {
+        Random random = new Random(18);
+        PersistentList<Integer> list = PersistentList.empty();
+        List<Integer> reference = new ArrayList<>();
+        List<PersistentList<Integer>> versions = new ArrayList<>();
+        List<List<Integer>> expectedVersions = new ArrayList<>();
+
+        for (int step = 0; step < 3000; step++) {
+            int size = reference.size();
+            int operation = random.nextInt(size == 0 ? 1 : 4);
+            int value = random.nextInt(1000);
+            if (operation <= 1) {
+                int index = random.nextInt(size + 1);
+                list = list.plus(index, value);
+                reference.add(index, value);
+            } else if (operation == 2) {
+                int index = random.nextInt(size);
+                list = list.minus(index);
+                reference.remove(index);
+            } else {
+                int index = random.nextInt(size);
+                list = list.with(index, value);
+                reference.set(index, value);
+            }
+            assertSameList(reference, list);
+            if (step % 50 == 0) {
+                versions.add(list);
+                expectedVersions.add(new ArrayList<>(reference));
+            }
+        }
+
+        // Every older version is untouched by the changes made after it.
+        for (int i = 0; i < versions.size(); i++) {
+            assertSameList(expectedVersions.get(i), versions.get(i));
+        }
+    }
+
+    @Test
+    void ofBuildsTheSameList() {
+        Random random = new Random(7);
+        for (int n : new int[]{0, 1, 2, 3, 10, 1000}) {
+            List<Integer> values = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                values.add(random.nextInt());
+            }
+            PersistentList<Integer> list = PersistentList.of(values);
+            assertSameList(values, list);
+
+            // A list built by of is as editable as one built element by element.
+            if (n > 0) {
+                values.add(n / 2, -1);
+                values.remove(0);
+                assertSameList(values, list.plus(n / 2, -1).minus(0));
+            }
+        }
+    }
+
+    @Test
+    void rejectsIndexesOutOfBounds() {
+        PersistentList<Integer> list = PersistentList.of(List.of(1, 2, 3));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.plus(4, 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.minus(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> list.with(3, 0));
+        assertSameList(List.of(1, 2, 3), list);
+    }
+}
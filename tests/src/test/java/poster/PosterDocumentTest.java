@@ -0,0 +1,256 @@
+package poster;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PosterDocumentTest {
+    // Mirrors the private constants of the file format.
+    private static final int MAGIC = 0x50535452;
+    private static final int FOOTER_MAGIC = 0x5053464E;
+
+    @TempDir
+    File dir;
+
+    private final ImagePool pool = new ImagePool(64L << 20);
+
+    static MipMap noise(int seed) {
+        BufferedImage image = new BufferedImage(32, 24, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(seed);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return new MipMap(image);
+    }
+
+    static List<Drawable> scene() {
+        List<Drawable> scene = new ArrayList<>();
+        ShapeDrawable rectangle = new ShapeDrawable(new Rectangle2D.Double(10, 20, 30, 40), new Color(0x80FF0000, true));
+        rectangle.transform = AffineTransform.getRotateInstance(0.5, 25, 40);
+        scene.add(rectangle);
+        Path2D.Double path = new Path2D.Double(Path2D.WIND_EVEN_ODD);
+        path.moveTo(0, 0);
+        path.lineTo(10, 0);
+        path.quadTo(15, 5, 10, 10);
+        path.curveTo(5, 15, 0, 15, 0, 10);
+        path.closePath();
+        scene.add(new GroupDrawable(List.of(new ShapeDrawable(path, Color.BLUE),
+                new ShapeDrawable(new Ellipse2D.Double(50, 50, 20, 10), Color.GREEN))));
+        ImageDrawable image = new ImageDrawable(noise(1), 100, 100);
+        scene.add(image);
+        scene.add(new TextDrawable("Poster\nsecond line", new Font(Font.SERIF, Font.ITALIC, 20), Color.BLACK, 120));
+        return scene;
+    }
+
+    static void assertSameDrawable(Drawable expected, Drawable actual) throws IOException {
+        assertEquals(expected.getClass(), actual.getClass());
+        assertEquals(expected.transform, actual.transform);
+        if (expected instanceof ShapeDrawable) {
+            assertEquals(((ShapeDrawable) expected).color, ((ShapeDrawable) actual).color);
+            assertEquals(expected.getBounds(), actual.getBounds());
+        } else if (expected instanceof ImageDrawable) {
+            MipMap want = ((ImageDrawable) expected).mipMap;
+            MipMap got = ((ImageDrawable) actual).mipMap;
+            assertEquals(want.width, got.width);
+            assertEquals(want.height, got.height);
+            assertArrayEquals(PosterDocument.encode(want), got.source.readAllBytes());
+        } else if (expected instanceof TextDrawable) {
+            TextDrawable want = (TextDrawable) expected;
+            TextDrawable got = (TextDrawable) actual;
+            assertEquals(want.text, got.text);
+            assertEquals(want.font, got.font);
+            assertEquals(want.color, got.color);
+            assertEquals(want.wrapWidth, got.wrapWidth);
+        } else {
+            List<Drawable> want = ((GroupDrawable) expected).children;
+            List<Drawable> got = ((GroupDrawable) actual).children;
+            assertEquals(want.size(), got.size());
+            for (int i = 0; i < want.size(); i++) {
+                assertSameDrawable(want.get(i), got.get(i));
+            }
+        }
+    }
+
+    static void assertSameScene(List<Drawable> expected, List<Drawable> actual) throws IOException {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameDrawable(expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    void roundTrip() throws IOException {
+        File file = new File(dir, "round.poster");
+        List<Drawable> scene = scene();
+        new PosterDocument(file).save(scene, CanvasPanel.DEFAULT_PAGE);
+
+        assertSameScene(scene, PosterDocument.load(file, pool).drawables);
+    }
+
+    @Test
+    void appendsAndReloads() throws IOException {
+        File file = new File(dir, "append.poster");
+        List<Drawable> scene = scene();
+        PosterDocument document = new PosterDocument(file);
+        document.save(scene, CanvasPanel.DEFAULT_PAGE);
+        byte[] first = Files.readAllBytes(file.toPath());
+
+        scene.add(new ImageDrawable(noise(2), 0, 0));
+        scene.remove(0);
+        document.save(scene, CanvasPanel.DEFAULT_PAGE);
+        byte[] second = Files.readAllBytes(file.toPath());
+        assertTrue(second.length > first.length);
+        assertArrayEquals(first, Arrays.copyOf(second, first.length), "a save appends to the file");
+        assertSameScene(scene, PosterDocument.load(file, pool).drawables);
+
+        // Saving a loaded document appends to the same file as well.
+        PosterDocument.Loaded loaded = PosterDocument.load(file, pool);
+        loaded.drawables.add(new ShapeDrawable(new Rectangle2D.Double(0, 0, 1, 1), Color.RED));
+        loaded.document.save(loaded.drawables, CanvasPanel.DEFAULT_PAGE);
+        byte[] third = Files.readAllBytes(file.toPath());
+        assertArrayEquals(second, Arrays.copyOf(third, second.length));
+        assertSameScene(loaded.drawables, PosterDocument.load(file, pool).drawables);
+    }
+
+    @Test
+    void keepsThePage() throws IOException {
+        File file = new File(dir, "page.poster");
+        PosterDocument document = new PosterDocument(file);
+        Rectangle page = new Rectangle(0, 0, 5000, 2000);
+        document.save(scene(), page);
+        assertEquals(page, PosterDocument.load(file, pool).page);
+
+        Rectangle resized = new Rectangle(-10, 20, 300, 400);
+        document.save(scene(), resized);
+        assertEquals(resized, PosterDocument.load(file, pool).page);
+    }
+
+    @Test
+    void readsVersion1AndRewritesItAsTheCurrentVersion() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(1);
+        long recordsOffset = bytes.size();
+        out.writeInt(1);
+        out.writeByte(PosterDocument.SHAPE);
+        for (double value : new double[]{1, 0, 0, 1, 5, 6}) {
+            out.writeDouble(value);
+        }
+        out.writeInt(Color.ORANGE.getRGB());
+        out.writeByte(PosterDocument.RECTANGLE);
+        for (double value : new double[]{0, 0, 10, 20}) {
+            out.writeDouble(value);
+        }
+        long indexOffset = bytes.size();
+        out.writeInt(0);
+        out.writeLong(recordsOffset);
+        out.writeLong(indexOffset);
+        out.writeInt(FOOTER_MAGIC);
+        File file = new File(dir, "v1.poster");
+        Files.write(file.toPath(), bytes.toByteArray());
+
+        PosterDocument.Loaded loaded = PosterDocument.load(file, pool);
+        assertEquals(CanvasPanel.DEFAULT_PAGE, loaded.page);
+        assertEquals(1, loaded.drawables.size());
+        ShapeDrawable shape = (ShapeDrawable) loaded.drawables.get(0);
+        assertEquals(Color.ORANGE, shape.color);
+        assertEquals(new Rectangle(5, 6, 10, 20), shape.getBounds());
+
+        loaded.drawables.add(new TextDrawable("new", new Font(Font.SANS_SERIF, Font.PLAIN, 12), Color.BLACK, 0));
+        loaded.document.save(loaded.drawables, CanvasPanel.DEFAULT_PAGE);
+        byte[] saved = Files.readAllBytes(file.toPath());
+        assertEquals(3, saved[7], "the file is rewritten with a version 3 header");
+        assertSameScene(loaded.drawables, PosterDocument.load(file, pool).drawables);
+    }
+
+    @Test
+    void loadsThePreviousSaveBehindATornTail() throws IOException {
+        File file = new File(dir, "torn.poster");
+        List<Drawable> scene = scene();
+        PosterDocument document = new PosterDocument(file);
+        document.save(scene, CanvasPanel.DEFAULT_PAGE);
+        List<Drawable> saved = new ArrayList<>(scene);
+        long firstLength = file.length();
+        scene.add(new ImageDrawable(noise(3), 0, 0));
+        document.save(scene, CanvasPanel.DEFAULT_PAGE);
+
+        for (long cut : new long[]{1, 7, 20, 21, file.length() - firstLength - 1}) {
+            File torn = new File(dir, "torn-" + cut + ".poster");
+            Files.copy(file.toPath(), torn.toPath());
+            try (RandomAccessFile out = new RandomAccessFile(torn, "rw")) {
+                out.setLength(file.length() - cut);
+            }
+            PosterDocument.Loaded loaded = PosterDocument.load(torn, pool);
+            assertSameScene(saved, loaded.drawables);
+
+            // The next save rewrites the file without the torn tail.
+            loaded.document.save(scene, CanvasPanel.DEFAULT_PAGE);
+            assertSameScene(scene, PosterDocument.load(torn, pool).drawables);
+        }
+    }
+
+    @Test
+    void rejectsAFileWithoutAnyCompleteSave() throws IOException {
+        File file = new File(dir, "broken.poster");
+        new PosterDocument(file).save(scene(), CanvasPanel.DEFAULT_PAGE);
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.setLength(file.length() - 1);
+        }
+        assertThrows(IOException.class, () -> PosterDocument.load(file, pool));
+    }
+
+    @Test
+    void compactsOnceDeadBytesOutweighLiveOnes() throws IOException {
+        File file = new File(dir, "compact.poster");
+        PosterDocument document = new PosterDocument(file);
+        List<Drawable> scene = new ArrayList<>(List.of(new ImageDrawable(noise(10), 0, 0)));
+        document.save(scene, CanvasPanel.DEFAULT_PAGE);
+        PosterDocument.Loaded loaded = PosterDocument.load(file, pool);
+        ImageDrawable kept = (ImageDrawable) loaded.drawables.get(0);
+        scene = new ArrayList<>(List.of(kept));
+
+        List<ImageDrawable> dropped = new ArrayList<>();
+        long largest = 0;
+        for (int i = 0; i < 20; i++) {
+            ImageDrawable image = (ImageDrawable) PosterDocument.load(file, pool).drawables.get(scene.size() - 1);
+            if (scene.size() > 1) {
+                dropped.add(image);
+                scene.remove(1);
+            }
+            scene.add(new ImageDrawable(noise(11 + i), 0, 0));
+            loaded.document.save(scene, CanvasPanel.DEFAULT_PAGE);
+            largest = Math.max(largest, file.length());
+        }
+        long live = file.length();
+        loaded.document.save(scene, CanvasPanel.DEFAULT_PAGE);
+        assertTrue(largest < 4 * live, "the file stays within a small multiple of its live size");
+
+        // Images loaded from earlier saves stay readable after the rewrites moved or dropped their blobs.
+        assertArrayEquals(PosterDocument.encode(noise(10)), kept.mipMap.source.readAllBytes());
+        for (int i = 0; i < dropped.size(); i++) {
+            assertArrayEquals(PosterDocument.encode(noise(11 + i)), dropped.get(i).mipMap.source.readAllBytes());
+        }
+        assertSameScene(scene, PosterDocument.load(file, pool).drawables);
+    }
+}
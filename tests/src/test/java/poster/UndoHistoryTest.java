@@ -0,0 +1,257 @@
+package poster;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UndoHistoryTest {
+    private final Random random = new Random(15);
+    private CanvasPanel canvas;
+    // Nudges that were expected to fold into the step before them.
+    private int mergedNudges;
+
+    // What an undo or redo has to restore: the page, and per drawable in z-order its identity, transform,
+    // fill color and children.
+    private static final class State {
+        final Drawable drawable;
+        final double[] matrix = new double[6];
+        final Color color;
+        final List<State> children = new ArrayList<>();
+
+        State(Drawable drawable) {
+            this.drawable = drawable;
+            drawable.transform.getMatrix(matrix);
+            color = UndoHistory.ColorEdit.colorOf(drawable);
+            if (drawable instanceof GroupDrawable) {
+                for (Drawable child : ((GroupDrawable) drawable).children) {
+                    children.add(new State(child));
+                }
+            }
+        }
+    }
+
+    private static final class Scene {
+        final Rectangle page;
+        final List<State> drawables = new ArrayList<>();
+
+        Scene(CanvasPanel canvas) {
+            page = canvas.getPageBounds();
+            for (Drawable drawable : canvas.drawableObjects) {
+                drawables.add(new State(drawable));
+            }
+        }
+    }
+
+    private static boolean same(List<State> expected, List<State> actual) {
+        if (expected.size() != actual.size()) return false;
+        for (int i = 0; i < expected.size(); i++) {
+            State want = expected.get(i);
+            State got = actual.get(i);
+            if (want.drawable != got.drawable || !Objects.equals(want.color, got.color)) return false;
+            for (int m = 0; m < 6; m++) {
+                if (Math.abs(want.matrix[m] - got.matrix[m]) > 1e-6) return false;
+            }
+            if (!same(want.children, got.children)) return false;
+        }
+        return true;
+    }
+
+    private static boolean same(Scene expected, Scene actual) {
+        return expected.page.equals(actual.page) && same(expected.drawables, actual.drawables);
+    }
+
+    private void assertScene(Scene expected, String message) {
+        assertTrue(same(expected, new Scene(canvas)), message);
+    }
+
+    @BeforeEach
+    void createCanvas() {
+        canvas = new CanvasPanel(null);
+        canvas.setSize(800, 600);
+    }
+
+    private Drawable shape() {
+        Shape shape = random.nextBoolean() ? new Rectangle2D.Double(random.nextInt(700), random.nextInt(500), 20, 30)
+                : new Ellipse2D.Double(random.nextInt(700), random.nextInt(500), 40, 10);
+        return new ShapeDrawable(shape, new Color(random.nextInt()));
+    }
+
+    private void selectSome(int max) {
+        List<Drawable> objects = canvas.drawableObjects;
+        List<Drawable> chosen = new ArrayList<>();
+        for (int i = random.nextInt(max) + 1; i > 0 && !objects.isEmpty(); i--) {
+            chosen.add(objects.get(random.nextInt(objects.size())));
+        }
+        canvas.setSelection(chosen);
+    }
+
+    // Applies one random edit through the canvas. Returns the selection it nudged, or null for other edits.
+    private Set<Drawable> edit() {
+        int size = canvas.drawableObjects.size();
+        switch (random.nextInt(size < 2 ? 2 : 10)) {
+            case 0, 1 -> canvas.addDrawable(shape(), random.nextInt(size + 1));
+            case 2 -> canvas.removeDrawable(canvas.drawableObjects.get(random.nextInt(size)));
+            case 3, 4 -> {
+                selectSome(3);
+                int nudges = random.nextInt(4) + 1;
+                mergedNudges += nudges - 1;
+                for (int i = 0; i < nudges; i++) {
+                    canvas.transformSelection(random.nextBoolean()
+                            ? AffineTransform.getTranslateInstance(random.nextInt(9) - 4, random.nextInt(9) + 1)
+                            : AffineTransform.getRotateInstance(random.nextDouble() + 0.1, 400, 300));
+                }
+                return new HashSet<>(canvas.selection);
+            }
+            case 5 -> {
+                selectSome(3);
+                canvas.fillSelection(new Color(random.nextInt()));
+            }
+            case 6 -> {
+                selectSome(3);
+                canvas.moveSelectionLayer(random.nextInt(7) - 3);
+            }
+            case 7 -> {
+                selectSome(4);
+                canvas.groupSelection();
+            }
+            case 8 -> {
+                selectSome(4);
+                canvas.ungroupSelection();
+            }
+            default -> canvas.resizePage(new Rectangle(0, 0, 600 + random.nextInt(3) * 300, 400 + random.nextInt(3) * 200));
+        }
+        return null;
+    }
+
+    @Test
+    void undoAndRedoRestoreEveryStep() {
+        // states.get(i) is the scene after i undoable steps; position is the step the canvas is at.
+        List<Scene> states = new ArrayList<>(List.of(new Scene(canvas)));
+        int position = 0;
+        Set<Drawable> lastNudged = null;
+
+        for (int round = 0; round < 600; round++) {
+            if (round % 40 == 39) {
+                // Step back a little and redo part of it; the next edit then drops what is left to redo.
+                int back = random.nextInt(Math.min(position, 5) + 1);
+                for (int i = 0; i < back; i++) {
+                    assertTrue(canvas.history.undo(canvas));
+                    assertScene(states.get(--position), "undo in round " + round);
+                }
+                for (int i = random.nextInt(back + 1); i > 0; i--) {
+                    assertTrue(canvas.history.redo(canvas));
+                    assertScene(states.get(++position), "redo in round " + round);
+                }
+                lastNudged = null;
+            }
+
+            Scene before = states.get(position);
+            Set<Drawable> nudged = edit();
+            Scene after = new Scene(canvas);
+            if (same(before, after)) continue;
+
+            // Consecutive nudges of the same selection are one step.
+            if (nudged != null && nudged.equals(lastNudged)) {
+                states.set(position, after);
+                mergedNudges++;
+            } else {
+                states.subList(position + 1, states.size()).clear();
+                states.add(after);
+                position++;
+            }
+            assertFalse(canvas.history.canRedo(), "a new edit drops everything there was to redo");
+            lastNudged = nudged;
+        }
+        assertTrue(mergedNudges > 0, "some nudges were merged");
+
+        for (int i = position - 1; i >= 0; i--) {
+            assertTrue(canvas.history.undo(canvas));
+            assertScene(states.get(i), "undo to step " + i);
+        }
+        assertFalse(canvas.history.undo(canvas));
+        for (int i = 1; i <= position; i++) {
+            assertTrue(canvas.history.redo(canvas));
+            assertScene(states.get(i), "redo to step " + i);
+        }
+        assertFalse(canvas.history.redo(canvas));
+    }
+
+    @Test
+    void groupAndUngroupAreSingleSteps() {
+        List<Drawable> shapes = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            shapes.add(shape());
+            canvas.addDrawable(shapes.get(i));
+        }
+        Scene flat = new Scene(canvas);
+        canvas.setSelection(List.of(shapes.get(1), shapes.get(3), shapes.get(4)));
+        canvas.groupSelection();
+        Scene grouped = new Scene(canvas);
+        assertEquals(3, canvas.drawableObjects.size());
+        canvas.ungroupSelection();
+        assertEquals(5, canvas.drawableObjects.size());
+
+        canvas.undo();
+        assertScene(grouped, "one undo regroups");
+        canvas.undo();
+        assertScene(flat, "one undo ungroups");
+        canvas.redo();
+        assertScene(grouped, "one redo groups");
+    }
+
+    @Test
+    void trimsTheOldestStepsWithoutBreakingTheRest() {
+        canvas.history = new UndoHistory(2048);
+        List<Scene> states = new ArrayList<>(List.of(new Scene(canvas)));
+        for (int round = 0; round < 400; round++) {
+            Scene before = states.get(states.size() - 1);
+            Set<Drawable> nudged = edit();
+            Scene after = new Scene(canvas);
+            if (same(before, after)) continue;
+            if (nudged != null) {
+                // Keeps every step separate, so each one can be told apart below.
+                canvas.undo();
+                canvas.redo();
+            }
+            states.add(after);
+            assertTrue(canvas.history.bytes() <= canvas.history.budget, "the history stays within its budget");
+        }
+
+        // Only the newest steps are left, and undoing all of them and redoing them again must replay the
+        // same scenes: an entry may only refer to drawables that the entries before it leave in place.
+        int undone = 0;
+        while (canvas.history.undo(canvas)) {
+            undone++;
+            assertScene(states.get(states.size() - 1 - undone), "undo " + undone);
+        }
+        assertTrue(undone > 0 && undone < states.size() - 1, "the oldest steps were dropped");
+        Scene oldest = new Scene(canvas);
+        for (int i = undone - 1; i >= 0; i--) {
+            assertTrue(canvas.history.redo(canvas));
+            assertScene(states.get(states.size() - 1 - i), "redo to " + i + " from the end");
+        }
+
+        // A new edit on an undone history drops its redo entries, and trims again from the oldest end.
+        for (int i = 0; i < undone; i++) {
+            canvas.undo();
+        }
+        assertScene(oldest, "back at the oldest step left");
+        canvas.addDrawable(shape());
+        assertFalse(canvas.history.canRedo());
+        assertTrue(canvas.history.bytes() <= canvas.history.budget);
+        canvas.undo();
+        assertScene(oldest, "the new edit undoes onto the oldest step left");
+    }
+}
@@ -0,0 +1,156 @@
+package poster;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZOrderListTest {
+    private static Drawable shape() {
+        return new ShapeDrawable(new Rectangle2D.Double(0, 0, 1, 1), Color.BLACK);
+    }
+
+    // The list operations on a plain ArrayList, as the reference the treap must agree with.
+    private static void moveAllBy(List<Drawable> list, List<Drawable> drawables, int offset) {
+        List<Integer> ranks = new ArrayList<>();
+        for (Drawable drawable : drawables) {
+            int index = list.indexOf(drawable);
+            if (index >= 0 && !ranks.contains(index)) ranks.add(index);
+        }
+        ranks.sort(null);
+        List<Drawable> moved = new ArrayList<>();
+        for (int rank : ranks) {
+            moved.add(list.get(rank));
+        }
+        list.removeAll(moved);
+        for (int i = 0; i < moved.size(); i++) {
+            int before = ranks.get(i) - i;
+            int target = (int) Math.max(0, Math.min(list.size() - i, (long) before + offset));
+            list.add(target + i, moved.get(i));
+        }
+    }
+
+    private static void assertSameOrder(List<Drawable> expected, ZOrderList actual, Random random) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), actual.get(i));
+            assertEquals(i, actual.indexOf(expected.get(i)));
+            assertTrue(actual.contains(expected.get(i)));
+        }
+        assertEquals(expected, new ArrayList<>(actual));
+        int from = expected.isEmpty() ? 0 : random.nextInt(expected.size() + 1);
+        Iterator<Drawable> iterator = actual.iteratorFrom(from);
+        for (int i = from; i < expected.size(); i++) {
+            assertSame(expected.get(i), iterator.next());
+        }
+        assertFalse(iterator.hasNext());
+    }
+
+    @Test
+    void agreesWithArrayListUnderRandomOperations() {
+        Random random = new Random(12);
+        ZOrderList list = new ZOrderList();
+        List<Drawable> reference = new ArrayList<>();
+        List<Drawable> removed = new ArrayList<>();
+
+        for (int step = 0; step < 5000; step++) {
+            int size = reference.size();
+            int operation = random.nextInt(size == 0 ? 1 : 10);
+            switch (operation) {
+                case 0, 1, 2 -> {
+                    Drawable drawable = shape();
+                    int index = random.nextInt(size + 1);
+                    list.add(index, drawable);
+                    reference.add(index, drawable);
+                }
+                case 3 -> {
+                    int index = random.nextInt(size);
+                    removed.add(reference.get(index));
+                    assertSame(reference.remove(index), list.remove(index));
+                }
+                case 4 -> {
+                    Drawable drawable = reference.get(random.nextInt(size));
+                    removed.add(drawable);
+                    assertTrue(list.remove(drawable));
+                    reference.remove(drawable);
+                }
+                case 5 -> {
+                    int index = random.nextInt(size);
+                    Drawable drawable = shape();
+                    removed.add(reference.get(index));
+                    assertSame(reference.set(index, drawable), list.set(index, drawable));
+                }
+                case 6 -> {
+                    Drawable drawable = reference.get(random.nextInt(size));
+                    int offset = random.nextInt(7) - 3;
+                    int index = reference.indexOf(drawable);
+                    int target = Math.max(0, Math.min(size - 1, index + offset));
+                    assertEquals(target != index, list.moveBy(drawable, offset));
+                    reference.remove(index);
+                    reference.add(target, drawable);
+                }
+                case 7 -> {
+                    Drawable drawable = reference.get(random.nextInt(size));
+                    boolean front = random.nextBoolean();
+                    if (front) list.moveToFront(drawable); else list.moveToBack(drawable);
+                    reference.remove(drawable);
+                    reference.add(front ? reference.size() : 0, drawable);
+                }
+                default -> {
+                    List<Drawable> selection = new ArrayList<>();
+                    for (int i = random.nextInt(Math.min(size, 8)) + 1; i > 0; i--) {
+                        selection.add(reference.get(random.nextInt(size)));
+                    }
+                    if (!removed.isEmpty()) selection.add(removed.get(random.nextInt(removed.size())));
+                    int offset = random.nextInt(3) == 0 ? (random.nextBoolean() ? size : -size) : random.nextInt(9) - 4;
+                    list.moveAllBy(selection, offset);
+                    moveAllBy(reference, selection, offset);
+                }
+            }
+            assertSameOrder(reference, list, random);
+        }
+        for (Drawable drawable : removed) {
+            assertFalse(list.contains(drawable));
+            assertEquals(-1, list.indexOf(drawable));
+            assertFalse(list.moveBy(drawable, 1));
+        }
+    }
+
+    @Test
+    void rejectsDuplicates() {
+        ZOrderList list = new ZOrderList();
+        Drawable drawable = shape();
+        list.add(drawable);
+        assertThrows(IllegalArgumentException.class, () -> list.add(drawable));
+        assertEquals(1, list.size());
+    }
+
+    @Test
+    void iteratorFailsFastAfterAChange() {
+        ZOrderList list = new ZOrderList();
+        list.add(shape());
+        list.add(shape());
+        Iterator<Drawable> iterator = list.iterator();
+        iterator.next();
+        list.add(shape());
+        assertThrows(java.util.ConcurrentModificationException.class, iterator::next);
+    }
+
+    @Test
+    void clearEmptiesTheList() {
+        ZOrderList list = new ZOrderList();
+        Drawable drawable = shape();
+        list.add(drawable);
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertFalse(list.contains(drawable));
+        list.add(drawable);
+        assertEquals(0, list.indexOf(drawable));
+    }
+}